@@ -42,7 +42,7 @@ create table chat_history
 (
     id          bigint auto_increment comment 'id' primary key,
     message     text                               not null comment '消息',
-    messageType varchar(32)                        not null comment 'user/ai',
+    messageType varchar(32)                        not null comment 'user/ai/error/cancel',
     appId       bigint                             not null comment '应用id',
     userId      bigint                             not null comment '创建用户id',
     createTime  datetime default CURRENT_TIMESTAMP not null comment '创建时间',
@@ -2,41 +2,75 @@ package com.example.aicodemother.ai;
 
 import com.example.aicodemother.ai.model.HtmlCodeResult;
 import com.example.aicodemother.ai.model.MultiFileCodeResult;
+import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
 
+/**
+ * 代码生成 AI 服务，所有应用共用一个实例，按 appId 区分对话记忆
+ * 实例内部会持有用过的每个对话记忆，通过 {@link ChatMemoryAccess#evictChatMemory} 与对话记忆缓存同步移除
+ */
 @Service
-public interface AiCodeGeneratorService {
+public interface AiCodeGeneratorService extends ChatMemoryAccess {
     /**
      *
+     * @param appId       应用 ID，作为对话记忆 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/code-gen-html-system-prompt.md")
-    HtmlCodeResult generateHtmlCode(String userMessage);
+    HtmlCodeResult generateHtmlCode(@MemoryId Long appId, @UserMessage String userMessage);
     /**
      *
+     * @param appId       应用 ID，作为对话记忆 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/code-gen-multiFile-system-prompt.md")
-    MultiFileCodeResult generateMultiFileCode(String userMessage);
+    MultiFileCodeResult generateMultiFileCode(@MemoryId Long appId, @UserMessage String userMessage);
 
     /**
      *
+     * @param appId       应用 ID，作为对话记忆 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/code-gen-html-system-prompt.md")
-    Flux<String> generateHtmlCodeStreaming(String userMessage);
+    TokenStream generateHtmlCodeStreaming(@MemoryId Long appId, @UserMessage String userMessage);
     /**
      *
+     * @param appId       应用 ID，作为对话记忆 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/code-gen-multiFile-system-prompt.md")
-    Flux<String> generateMultiFileCodeStreaming(String userMessage);
+    TokenStream generateMultiFileCodeStreaming(@MemoryId Long appId, @UserMessage String userMessage);
+
+    /**
+     * 并行生成多文件前的结构规划，三个文件根据同一份规划同时生成
+     *
+     * @param appId       应用 ID，作为对话记忆 ID
+     * @param userMessage
+     * @return
+     */
+    @SystemMessage(fromResource = "prompt/code-gen-multiFile-plan-system-prompt.md")
+    TokenStream generateMultiFilePlanStreaming(@MemoryId Long appId, @UserMessage String userMessage);
+
+    /**
+     * 在已有代码上修改，只输出查找替换补丁
+     *
+     * @param appId       应用 ID，作为对话记忆 ID
+     * @param files       当前已保存的全部文件
+     * @param userMessage 修改要求
+     * @return
+     */
+    @SystemMessage(fromResource = "prompt/code-gen-edit-system-prompt.md")
+    @UserMessage("{{files}}\n\n修改要求：{{userMessage}}")
+    TokenStream editCodeStreaming(@MemoryId Long appId, @V("files") String files, @V("userMessage") String userMessage);
 
 
 }
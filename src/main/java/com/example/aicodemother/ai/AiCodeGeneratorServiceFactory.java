@@ -1,62 +1,235 @@
 package com.example.aicodemother.ai;
 
+import com.example.aicodemother.ai.memory.LocalTokenCountEstimator;
+import com.example.aicodemother.ai.memory.TokenBudgetChatMemory;
+import com.example.aicodemother.ai.memory.TwoTierChatMemoryStore;
+import com.example.aicodemother.ai.routing.RoutingStreamingChatModel;
+import com.example.aicodemother.config.AiServiceCacheConfig;
+import com.example.aicodemother.config.ChatMemoryConfig;
+import com.example.aicodemother.config.ModelRoutingConfig;
+import com.example.aicodemother.cores.metrics.ChatMemoryMetrics;
 import com.example.aicodemother.service.ChatHistoryService;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.Duration;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 @Slf4j
 @Configuration
 public class AiCodeGeneratorServiceFactory {
 
+    private static final String CACHE_METRIC_PREFIX = "ai.service.cache";
+
     @Resource
     private ChatModel chatModel;
     @Resource
     private StreamingChatModel streamingChatModel;
+    @Resource
+    private ModelRoutingConfig modelRoutingConfig;
+    @Resource
+    private MeterRegistry meterRegistry;
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+    @Resource
+    private ChatMemoryMetrics chatMemoryMetrics;
 
+    private final LocalTokenCountEstimator tokenCountEstimator = new LocalTokenCountEstimator();
 
-    private final Cache<Long, AiCodeGeneratorService> aiServicesCache = Caffeine.newBuilder()
-            .maximumSize(100)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener(((key, value, cause) -> {
-                log.info("AI实例移除，appId:{}，移除原因:{}", key, cause);
-            }))
-            .build();
-    @Autowired
-    private RedisChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private AiServiceCacheConfig aiServiceCacheConfig;
+    @Resource
+    private ExecutorService aiServiceLoaderExecutor;
+
+    /**
+     * 所有应用共用的 AI 服务，按 @MemoryId 从缓存中取对应应用的对话记忆
+     */
+    private AiCodeGeneratorService aiCodeGeneratorService;
+
+    /**
+     * 每个应用的对话记忆，消息存储在 Redis 中，缓存的只是轻量的记忆对象
+     */
+    private AsyncLoadingCache<Long, ChatMemory> chatMemoryCache;
+    @Resource
+    private TwoTierChatMemoryStore twoTierChatMemoryStore;
     @Autowired
     private ChatHistoryService chatHistoryService;
 
 
+    @PostConstruct
+    public void init() {
+        initStreamingChatModel();
+        initChatMemoryCache();
+        aiCodeGeneratorService = AiServices.builder(AiCodeGeneratorService.class)
+                .chatModel(chatModel)
+                .streamingChatModel(streamingChatModel)
+                .chatMemoryProvider(memoryId -> chatMemoryCache.synchronous().get((Long) memoryId))
+                .build();
+    }
+
+    /**
+     * 所有应用共用的 AI 服务
+     */
+    @Bean
+    public AiCodeGeneratorService aiCodeGeneratorService() {
+        return aiCodeGeneratorService;
+    }
+
+    /**
+     * 同步获取 AI 服务，应用的对话记忆未缓存时在当前线程等待加载完成
+     */
     public AiCodeGeneratorService getOrCreateAiCodeGeneratorService(Long appId) {
-        return aiServicesCache.get(appId, this::createAiCodeGeneratorService);
+        chatMemoryCache.synchronous().get(appId);
+        return aiCodeGeneratorService;
     }
 
+    /**
+     * 异步获取 AI 服务，应用的对话记忆未缓存时在加载线程池中加载对话历史，同一应用的并发请求共用一次加载
+     */
+    public Mono<AiCodeGeneratorService> getAiCodeGeneratorServiceAsync(Long appId) {
+        // 订阅取消时不取消缓存中的加载任务，其他等待同一应用的请求仍可使用
+        return Mono.fromFuture(chatMemoryCache.get(appId), true).thenReturn(aiCodeGeneratorService);
+    }
 
-    public AiCodeGeneratorService createAiCodeGeneratorService(Long appId) {
-        log.info("创建AI实例，appId:{}", appId);
-        MessageWindowChatMemory messageWindowChatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(10)
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .build();
-        chatHistoryService.loadChatHistoryToMemory(appId, messageWindowChatMemory, 10);
-        return AiServices.builder(AiCodeGeneratorService.class)
-                .chatModel(chatModel)
+    /**
+     * 丢弃应用的对话记忆，下次对话时从数据库重新加载对话历史与当前文件（如应用代码被恢复到旧版本后）
+     */
+    public void evictChatMemory(Long appId) {
+        twoTierChatMemoryStore.deleteMessages(appId);
+        chatMemoryCache.synchronous().invalidate(appId);
+        aiCodeGeneratorService.evictChatMemory(appId);
+    }
+
+    private void initChatMemoryCache() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(aiServiceCacheConfig.getMaximumSize())
+                .expireAfterWrite(aiServiceCacheConfig.getExpireAfterWrite())
+                .expireAfterAccess(aiServiceCacheConfig.getExpireAfterAccess())
+                .executor(aiServiceLoaderExecutor)
+                .recordStats();
+        if (aiServiceCacheConfig.getRefreshAfterWrite() != null) {
+            builder.refreshAfterWrite(aiServiceCacheConfig.getRefreshAfterWrite());
+        }
+        chatMemoryCache = builder
+                .removalListener((Long key, ChatMemory value, RemovalCause cause) -> {
+                    log.info("对话记忆移除，appId:{}，移除原因:{}", key, cause);
+                    // AI 服务内部按记忆 ID 持有对话记忆且不会自行移除，需同步移除，否则缓存的容量与过期时间不起作用
+                    aiCodeGeneratorService.evictChatMemory(key);
+                    Counter.builder(CACHE_METRIC_PREFIX + ".removals")
+                            .description("对话记忆移除数")
+                            .tag("cause", cause.name())
+                            .register(meterRegistry)
+                            .increment();
+                })
+                .buildAsync(new CacheLoader<Long, ChatMemory>() {
+                    @Override
+                    public ChatMemory load(Long appId) {
+                        return createChatMemory(appId);
+                    }
+
+                    /**
+                     * 后台刷新不是由对话请求触发的，数据库中最新一条消息不是刚保存、尚未回复的提问，需要一并加载
+                     */
+                    @Override
+                    public ChatMemory reload(Long appId, ChatMemory oldValue) {
+                        return createChatMemory(appId, false);
+                    }
+                });
+        bindCacheMetrics(chatMemoryCache.synchronous());
+    }
+
+    /**
+     * 缓存统计指标，通过 Actuator 的 metrics 端点查看
+     */
+    private void bindCacheMetrics(Cache<Long, ChatMemory> cache) {
+        Gauge.builder(CACHE_METRIC_PREFIX + ".size", cache, Cache::estimatedSize)
+                .description("缓存的对话记忆数")
+                .register(meterRegistry);
+        Gauge.builder(CACHE_METRIC_PREFIX + ".hit.ratio", cache, c -> c.stats().hitRate())
+                .description("对话记忆缓存命中率")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_METRIC_PREFIX + ".gets", cache, c -> c.stats().hitCount())
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_METRIC_PREFIX + ".gets", cache, c -> c.stats().missCount())
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_METRIC_PREFIX + ".loads", cache, c -> c.stats().loadFailureCount())
+                .tag("result", "failure")
+                .register(meterRegistry);
+        FunctionTimer.builder(CACHE_METRIC_PREFIX + ".load", cache,
+                        c -> c.stats().loadCount(), c -> c.stats().totalLoadTime(), TimeUnit.NANOSECONDS)
+                .description("对话记忆加载耗时（含对话历史加载）")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 启用路由时将流式调用分发到多个后端，首个 token 过慢时发起对冲请求
+     */
+    private void initStreamingChatModel() {
+        if (!modelRoutingConfig.isEnabled() || modelRoutingConfig.getBackends().isEmpty()) {
+            return;
+        }
+        Map<String, StreamingChatModel> backends = modelRoutingConfig.buildBackends(streamingChatModel);
+        streamingChatModel = new RoutingStreamingChatModel(backends, modelRoutingConfig.getHedgeDelay(),
+                Schedulers.parallel(), meterRegistry);
+        log.info("启用流式模型路由，后端：{}，对冲阈值：{}", backends.keySet(), modelRoutingConfig.getHedgeDelay());
+    }
+
+    /**
+     * 多文件并行生成使用的无记忆实例，所有应用共用
+     */
+    @Bean
+    public MultiFilePartGeneratorService multiFilePartGeneratorService() {
+        return AiServices.builder(MultiFilePartGeneratorService.class)
                 .streamingChatModel(streamingChatModel)
-                .chatMemory(messageWindowChatMemory)
                 .build();
     }
+
+    /**
+     * 创建应用的对话记忆：Redis 中仍有记忆时直接使用，否则从数据库加载对话历史
+     * 由对话请求触发，数据库中最新一条是本次刚保存的提问，由本次调用写入记忆，加载时跳过
+     */
+    public ChatMemory createChatMemory(Long appId) {
+        return createChatMemory(appId, true);
+    }
+
+    /**
+     * @param skipLatest 加载对话历史时是否跳过数据库中最新的一条消息
+     */
+    private ChatMemory createChatMemory(Long appId, boolean skipLatest) {
+        log.info("创建对话记忆，appId:{}", appId);
+        TokenBudgetChatMemory chatMemory = new TokenBudgetChatMemory(appId, chatMemoryConfig.getMaxTokens(),
+                tokenCountEstimator, twoTierChatMemoryStore, chatMemoryMetrics);
+        if (!twoTierChatMemoryStore.getMessages(appId).isEmpty()) {
+            chatMemoryMetrics.recordHydration(ChatMemoryMetrics.SOURCE_REDIS);
+            return chatMemory;
+        }
+        int loadedCount = chatHistoryService.loadChatHistoryToMemory(appId, chatMemory,
+                chatMemoryConfig.getLoadMaxCount(), skipLatest);
+        chatMemoryMetrics.recordHydration(loadedCount > 0 ? ChatMemoryMetrics.SOURCE_MYSQL : ChatMemoryMetrics.SOURCE_EMPTY);
+        return chatMemory;
+    }
 }
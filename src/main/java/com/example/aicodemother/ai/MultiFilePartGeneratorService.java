@@ -0,0 +1,29 @@
+package com.example.aicodemother.ai;
+
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+
+/**
+ * 多文件并行生成：根据结构规划分别生成单个文件
+ * 三个文件同时调用模型，不使用对话记忆，避免并发写入同一应用的记忆；
+ * 应用已有代码时通过 currentFiles 传入已保存的文件，在其基础上修改，首次生成时传空串
+ */
+public interface MultiFilePartGeneratorService {
+
+    @SystemMessage(fromResource = "prompt/code-gen-multiFile-html-system-prompt.md")
+    @UserMessage("网站描述：{{requirement}}\n\n结构规划：\n{{plan}}{{currentFiles}}")
+    TokenStream generateHtmlStreaming(@V("requirement") String requirement, @V("plan") String plan,
+                                      @V("currentFiles") String currentFiles);
+
+    @SystemMessage(fromResource = "prompt/code-gen-multiFile-css-system-prompt.md")
+    @UserMessage("网站描述：{{requirement}}\n\n结构规划：\n{{plan}}{{currentFiles}}")
+    TokenStream generateCssStreaming(@V("requirement") String requirement, @V("plan") String plan,
+                                     @V("currentFiles") String currentFiles);
+
+    @SystemMessage(fromResource = "prompt/code-gen-multiFile-js-system-prompt.md")
+    @UserMessage("网站描述：{{requirement}}\n\n结构规划：\n{{plan}}{{currentFiles}}")
+    TokenStream generateJsStreaming(@V("requirement") String requirement, @V("plan") String plan,
+                                    @V("currentFiles") String currentFiles);
+}
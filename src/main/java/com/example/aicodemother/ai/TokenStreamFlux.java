@@ -0,0 +1,50 @@
+package com.example.aicodemother.ai;
+
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.service.TokenStream;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 将 TokenStream 转换为可取消的 Flux
+ * langchain4j-reactor 自带的适配在创建时就发起模型调用，且下游取消后模型仍会继续输出；
+ * 这里在订阅时才发起调用，下游取消时通过 StreamingHandle 中断模型流
+ */
+public class TokenStreamFlux {
+
+    private TokenStreamFlux() {
+    }
+
+    /**
+     * @param tokenStreamSupplier 创建 TokenStream（不调用 start）
+     * @return 订阅时发起调用、取消时中断模型流的 Flux
+     */
+    public static Flux<String> from(Supplier<TokenStream> tokenStreamSupplier) {
+        return Flux.create(sink -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            AtomicReference<StreamingHandle> handle = new AtomicReference<>();
+            sink.onCancel(() -> {
+                cancelled.set(true);
+                StreamingHandle streamingHandle = handle.get();
+                if (streamingHandle != null) {
+                    streamingHandle.cancel();
+                }
+            });
+            tokenStreamSupplier.get()
+                    .onPartialResponseWithContext((partialResponse, context) -> {
+                        handle.set(context.streamingHandle());
+                        if (cancelled.get()) {
+                            context.streamingHandle().cancel();
+                            return;
+                        }
+                        sink.next(partialResponse.text());
+                    })
+                    .onCompleteResponse(response -> sink.complete())
+                    .onError(sink::error)
+                    .start();
+        });
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.aicodemother.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 代码消息压缩
+ * 对话记忆中只有最新版本的代码对模型有用：旧的 AI 消息中的代码块替换为文件摘要（文件名与行数），
+ * 说明文字保留；最新的代码以应用目录中已保存的文件为准，只注入一次
+ */
+@Slf4j
+public final class CodeMessageCompactor {
+
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```([\\w-]*)[^\\n]*\\n([\\s\\S]*?)```");
+
+    /**
+     * 代码块语言对应的文件名
+     */
+    private static final Map<String, String> FILE_NAMES = Map.of(
+            "html", "index.html",
+            "css", "style.css",
+            "js", "script.js",
+            "javascript", "script.js");
+
+    /**
+     * 注入记忆的应用文件，按此顺序输出
+     */
+    private static final List<String> APP_FILES = List.of("index.html", "style.css", "script.js");
+
+    private CodeMessageCompactor() {
+    }
+
+    /**
+     * @return 消息是否为包含代码块的 AI 消息或用户消息（修改模式下用户消息携带当前文件）
+     */
+    public static boolean containsCode(ChatMessage message) {
+        if (message instanceof AiMessage aiMessage) {
+            return containsCode(aiMessage.text());
+        }
+        return message instanceof UserMessage userMessage && userMessage.hasSingleText()
+                && containsCode(userMessage.singleText());
+    }
+
+    public static boolean containsCode(String text) {
+        return text != null && CODE_BLOCK_PATTERN.matcher(text).find();
+    }
+
+    /**
+     * 将代码块替换为摘要，其余文字不变
+     *
+     * @param text AI 消息文本
+     * @return 压缩后的文本，没有代码块时原样返回
+     */
+    public static String compact(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+        StringBuilder result = null;
+        while (matcher.find()) {
+            if (result == null) {
+                result = new StringBuilder(text.length() / 8);
+            }
+            String fileName = FILE_NAMES.getOrDefault(matcher.group(1).toLowerCase(), "代码块");
+            int lines = StrUtil.count(matcher.group(2), '\n');
+            matcher.appendReplacement(result, Matcher.quoteReplacement(
+                    StrUtil.format("[{}，{} 行，旧版本已省略]", fileName, lines)));
+        }
+        if (result == null) {
+            return text;
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * 压缩消息中的代码块
+     *
+     * @return 压缩后的消息，不含代码块时返回原消息
+     */
+    public static ChatMessage compact(ChatMessage message) {
+        if (!containsCode(message)) {
+            return message;
+        }
+        if (message instanceof UserMessage userMessage) {
+            return UserMessage.from(compact(userMessage.singleText()));
+        }
+        AiMessage aiMessage = (AiMessage) message;
+        String text = compact(aiMessage.text());
+        return aiMessage.hasToolExecutionRequests()
+                ? AiMessage.from(text, aiMessage.toolExecutionRequests())
+                : AiMessage.from(text);
+    }
+
+    /**
+     * 读取应用目录中已保存的文件，渲染为代码块
+     *
+     * @param appDir 应用目录
+     * @return 文件内容，目录中没有文件时返回 null
+     */
+    public static String renderAppFiles(Path appDir) {
+        List<String> blocks = new ArrayList<>(APP_FILES.size());
+        for (String fileName : APP_FILES) {
+            Path file = appDir.resolve(fileName);
+            if (!Files.isRegularFile(file)) {
+                continue;
+            }
+            try {
+                String extension = StrUtil.subAfter(fileName, '.', true);
+                String language = "js".equals(extension) ? "javascript" : extension;
+                blocks.add(StrUtil.format("```{}\n{}\n```", language,
+                        StrUtil.trim(Files.readString(file, StandardCharsets.UTF_8))));
+            } catch (IOException e) {
+                log.warn("读取应用文件失败：{}", file, e);
+            }
+        }
+        if (blocks.isEmpty()) {
+            return null;
+        }
+        return "当前已保存的应用文件（最新版本）：\n\n" + String.join("\n\n", blocks);
+    }
+}
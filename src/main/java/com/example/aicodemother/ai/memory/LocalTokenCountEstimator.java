@@ -0,0 +1,97 @@
+package com.example.aicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+/**
+ * 本地 token 数估算，不依赖模型词表，不发起网络请求
+ * 按 BPE 分词的经验规律估算：连续的英文字母与数字约 4 个字符一个 token，
+ * 中日韩等非 ASCII 字符每个字符约一个 token，标点符号各算一个 token，连续空白合并为一个 token。
+ * 用于控制对话记忆的大小，结果是近似值，偏差在一两成以内即可满足需要。
+ */
+public class LocalTokenCountEstimator implements TokenCountEstimator {
+
+    /**
+     * 每条消息的角色标记等固定开销
+     */
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    private static final int CHARS_PER_WORD_TOKEN = 4;
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int wordLength = 0;
+        boolean inLineBreak = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                wordLength++;
+                inLineBreak = false;
+                continue;
+            }
+            tokens += (wordLength + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+            wordLength = 0;
+            // 单个空格通常并入下一个词，换行与其后的缩进合并为一个 token
+            if (c == ' ') {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (!inLineBreak) {
+                    tokens++;
+                    inLineBreak = true;
+                }
+                continue;
+            }
+            inLineBreak = false;
+            if (!Character.isLowSurrogate(c)) {
+                tokens++;
+            }
+        }
+        tokens += (wordLength + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = TOKENS_PER_MESSAGE;
+        if (message instanceof SystemMessage systemMessage) {
+            tokens += estimateTokenCountInText(systemMessage.text());
+        } else if (message instanceof UserMessage userMessage) {
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimateTokenCountInText(textContent.text());
+                }
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimateTokenCountInText(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimateTokenCountInText(request.name()) + estimateTokenCountInText(request.arguments());
+                }
+            }
+        } else if (message instanceof ToolExecutionResultMessage resultMessage) {
+            tokens += estimateTokenCountInText(resultMessage.text());
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.aicodemother.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按 token 预算裁剪的对话记忆
+ * 每次写入后估算消息的 token 数，超出预算时先把旧版本代码压缩为摘要，再从最早的消息开始淘汰：
+ * 系统消息与最新一条包含代码的消息不计入预算、始终保留（一个完整页面本身就可能接近预算），
+ * 工具调用与其结果一起淘汰，淘汰后不以 AI 消息开头，最新一条消息即使超出预算也保留。
+ * 每次淘汰的消息数与 token 数通过 {@link TrimListener} 回调记录。
+ * 写入包含代码的消息时，之前消息中的代码块压缩为摘要，记忆中只保留最新一版完整代码。
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private final Object id;
+
+    private final int maxTokens;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final ChatMemoryStore store;
+
+    private final TrimListener trimListener;
+
+    public TokenBudgetChatMemory(Object id, int maxTokens, TokenCountEstimator tokenCountEstimator,
+                                 ChatMemoryStore store, TrimListener trimListener) {
+        this.id = id;
+        this.maxTokens = maxTokens;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.store = store;
+        this.trimListener = trimListener;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int index = findSystemMessage(messages);
+            if (index >= 0 && messages.get(index).equals(message)) {
+                return;
+            }
+        }
+        put(messages, message);
+        trim(messages);
+        store.updateMessages(id, messages);
+    }
+
+    /**
+     * 用一组消息替换全部记忆，结果与清空后逐条 {@link #add} 一致，但只写入一次存储
+     *
+     * @param newMessages 按时间正序排列的消息
+     */
+    public void replaceMessages(List<ChatMessage> newMessages) {
+        List<ChatMessage> messages = new ArrayList<>(newMessages.size());
+        for (ChatMessage message : newMessages) {
+            put(messages, message);
+        }
+        trim(messages);
+        store.updateMessages(id, messages);
+    }
+
+    /**
+     * 替换最后一条 AI 消息，用于把分多次模型调用生成的完整输出记为同一轮回复
+     *
+     * @param expectedText 最后一条 AI 消息应有的文本，不一致时（期间记忆已被修改）不替换
+     * @param message      新的 AI 消息
+     * @return 是否已替换
+     */
+    public boolean replaceLastAiMessage(String expectedText, AiMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (messages.isEmpty() || !(messages.getLast() instanceof AiMessage last)
+                || !Objects.equals(last.text(), expectedText)) {
+            return false;
+        }
+        messages.removeLast();
+        append(messages, message);
+        trim(messages);
+        store.updateMessages(id, messages);
+        return true;
+    }
+
+    /**
+     * 移除最后一轮对话（最后一条 AI 消息及其之前的用户消息），用于丢弃失败的一轮
+     *
+     * @return 最后两条消息不是一问一答时不移除，返回 false
+     */
+    public boolean removeLastExchange() {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        int size = messages.size();
+        if (size < 2 || !(messages.get(size - 1) instanceof AiMessage) || !(messages.get(size - 2) instanceof UserMessage)) {
+            return false;
+        }
+        messages.subList(size - 2, size).clear();
+        store.updateMessages(id, messages);
+        return true;
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 系统消息替换已有的系统消息并放在最前，其余消息追加到末尾
+     */
+    private static void put(List<ChatMessage> messages, ChatMessage message) {
+        if (message instanceof SystemMessage) {
+            int index = findSystemMessage(messages);
+            if (index >= 0) {
+                messages.remove(index);
+            }
+            messages.addFirst(message);
+        } else {
+            append(messages, message);
+        }
+    }
+
+    private static void append(List<ChatMessage> messages, ChatMessage message) {
+        if (CodeMessageCompactor.containsCode(message)) {
+            // 新代码生成后，之前各版本的代码只保留摘要
+            messages.replaceAll(CodeMessageCompactor::compact);
+        }
+        messages.add(message);
+    }
+
+    private void trim(List<ChatMessage> messages) {
+        ChatMessage latestCode = findLatestCodeMessage(messages);
+        int total = estimateBudgetedTokens(messages, latestCode);
+        if (total <= maxTokens) {
+            return;
+        }
+        // 淘汰之前先把旧版本代码压缩为摘要，最新一版代码不压缩
+        messages.replaceAll(message -> message == latestCode ? message : CodeMessageCompactor.compact(message));
+        total = estimateBudgetedTokens(messages, latestCode);
+        int trimmedMessages = 0;
+        int trimmedTokens = 0;
+        // 超出预算时淘汰最早的消息；淘汰后开头的 AI 消息与工具结果已失去对应的提问，一并淘汰
+        while (true) {
+            int index = findFirstEvictable(messages, latestCode);
+            if (index < 0 || index == messages.size() - 1
+                    || (total <= maxTokens && !isDanglingStart(messages.get(index)))) {
+                break;
+            }
+            int tokens = tokenCountEstimator.estimateTokenCountInMessage(messages.remove(index));
+            total -= tokens;
+            trimmedMessages++;
+            trimmedTokens += tokens;
+        }
+        if (trimmedMessages > 0) {
+            trimListener.onTrim(id, trimmedMessages, trimmedTokens, total);
+        }
+    }
+
+    /**
+     * 计入预算的 token 数，系统消息与最新一版代码不计入
+     */
+    private int estimateBudgetedTokens(List<ChatMessage> messages, ChatMessage latestCode) {
+        int total = 0;
+        for (ChatMessage message : messages) {
+            if (!(message instanceof SystemMessage) && message != latestCode) {
+                total += tokenCountEstimator.estimateTokenCountInMessage(message);
+            }
+        }
+        return total;
+    }
+
+    private static int findFirstEvictable(List<ChatMessage> messages, ChatMessage latestCode) {
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            if (!(message instanceof SystemMessage) && message != latestCode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 最新一条包含代码的消息（完整生成的 AI 回复、注入了当前文件的 AI 消息或修改模式下携带文件的用户消息）
+     */
+    private static ChatMessage findLatestCodeMessage(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (CodeMessageCompactor.containsCode(messages.get(i))) {
+                return messages.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDanglingStart(ChatMessage message) {
+        return message instanceof AiMessage || message instanceof ToolExecutionResultMessage;
+    }
+
+    private static int findSystemMessage(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 淘汰回调
+     */
+    @FunctionalInterface
+    public interface TrimListener {
+
+        /**
+         * @param memoryId        记忆 ID
+         * @param trimmedMessages 本次淘汰的消息数
+         * @param trimmedTokens   本次淘汰的估算 token 数
+         * @param retainedTokens  淘汰后计入预算的估算 token 数（不含系统消息与最新一版代码）
+         */
+        void onTrim(Object memoryId, int trimmedMessages, int trimmedTokens, int retainedTokens);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.aicodemother.ai.memory;
+
+import cn.hutool.core.util.IdUtil;
+import com.example.aicodemother.ai.memory.codec.ChatMemorySerializer;
+import com.example.aicodemother.config.ChatMemoryConfig;
+import com.example.aicodemother.config.RedisChatMemoryStoreConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 两级对话记忆存储
+ * 进程内 Caffeine 缓存作为一级缓存，Redis 作为二级存储：读取优先命中一级缓存，写入同时更新两级
+ * （Redis 写入与失效通知在同一次往返中完成），并通过 Redis 发布订阅通知其他节点丢弃各自的一级缓存。
+ * Redis 中的内容由 {@link ChatMemorySerializer} 编码（可压缩），以二进制读写。
+ * Redis 中没有记忆时读取一次原 langchain4j RedisChatMemoryStore 的键，有数据则转为当前格式写入并删除旧键。
+ */
+@Slf4j
+@Component
+public class TwoTierChatMemoryStore implements ChatMemoryStore, MessageListener {
+
+    private static final String KEY_PREFIX = "chat:memory:";
+
+    private static final String INVALIDATION_CHANNEL = "chat:memory:invalidate";
+
+    /**
+     * 失效通知格式为 节点 ID + 分隔符 + 记忆 ID，节点忽略自己发出的通知
+     */
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    /**
+     * 写入与失效通知在一次往返中完成（Jedis 管道不支持 PUBLISH，改用脚本）
+     */
+    private static final RedisScript<Long> UPDATE_SCRIPT = RedisScript.of(
+            "if tonumber(ARGV[2]) > 0 then redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+                    + "else redis.call('SET', KEYS[1], ARGV[1]) end "
+                    + "return redis.call('PUBLISH', ARGV[3], ARGV[4])",
+            Long.class);
+
+    private static final RedisScript<Long> DELETE_SCRIPT = RedisScript.of(
+            "redis.call('DEL', KEYS[1]) return redis.call('PUBLISH', ARGV[1], ARGV[2])",
+            Long.class);
+
+    private static final RedisSerializer<Long> SCRIPT_RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer chatMemoryListenerContainer;
+
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private RedisChatMemoryStoreConfig redisChatMemoryStoreConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ChatMemorySerializer chatMemorySerializer;
+
+    private Cache<String, List<ChatMessage>> localCache;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(chatMemoryConfig.getLocalMaximumSize())
+                .expireAfterAccess(chatMemoryConfig.getLocalExpireAfterAccess())
+                .expireAfterWrite(chatMemoryConfig.getLocalExpireAfterWrite())
+                .recordStats()
+                .build();
+        Gauge.builder("ai.memory.store.local.hit.ratio", localCache, cache -> cache.stats().hitRate())
+                .description("对话记忆一级缓存命中率")
+                .register(meterRegistry);
+        chatMemoryListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String id = memoryId.toString();
+        List<ChatMessage> messages = localCache.get(id, this::loadFromRedis);
+        return new ArrayList<>(messages);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String id = memoryId.toString();
+        try {
+            writeToRedis(id, messages);
+        } catch (RuntimeException e) {
+            // Redis 写入失败时一级缓存也不保留，避免与 Redis 不一致
+            localCache.invalidate(id);
+            throw e;
+        }
+        localCache.put(id, List.copyOf(messages));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String id = memoryId.toString();
+        localCache.invalidate(id);
+        stringRedisTemplate.execute(DELETE_SCRIPT, List.of(KEY_PREFIX + id),
+                INVALIDATION_CHANNEL, nodeId + MESSAGE_SEPARATOR + id);
+    }
+
+    /**
+     * 其他节点修改了对话记忆，丢弃本节点的一级缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        localCache.invalidate(body.substring(separator + 1));
+    }
+
+    private void writeToRedis(String id, List<ChatMessage> messages) {
+        stringRedisTemplate.execute(UPDATE_SCRIPT, RedisSerializer.byteArray(), SCRIPT_RESULT_SERIALIZER,
+                List.of(KEY_PREFIX + id),
+                chatMemorySerializer.serialize(messages),
+                bytes(String.valueOf(redisChatMemoryStoreConfig.getTtl())),
+                bytes(INVALIDATION_CHANNEL), bytes(nodeId + MESSAGE_SEPARATOR + id));
+    }
+
+    private List<ChatMessage> loadFromRedis(String id) {
+        byte[] data = get(KEY_PREFIX + id);
+        if (data == null) {
+            return chatMemoryConfig.isMigrateLegacyStore() ? migrateLegacy(id) : List.of();
+        }
+        return List.copyOf(chatMemorySerializer.deserialize(data));
+    }
+
+    /**
+     * 读取原 RedisChatMemoryStore 保存的 JSON，转为当前格式后删除旧键，之后不会再读取
+     */
+    private List<ChatMessage> migrateLegacy(String id) {
+        String legacyKey = chatMemoryConfig.getLegacyKeyPrefix() + id;
+        byte[] data = get(legacyKey);
+        if (data == null) {
+            return List.of();
+        }
+        List<ChatMessage> messages = List.copyOf(chatMemorySerializer.deserialize(data));
+        writeToRedis(id, messages);
+        stringRedisTemplate.delete(legacyKey);
+        log.info("对话记忆已从旧格式迁移，memoryId：{}，消息数：{}", id, messages.size());
+        return messages;
+    }
+
+    private byte[] get(String key) {
+        byte[] rawKey = bytes(key);
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
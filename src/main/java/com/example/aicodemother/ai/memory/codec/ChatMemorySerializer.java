@@ -0,0 +1,106 @@
+package com.example.aicodemother.ai.memory.codec;
+
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 对话记忆存储格式
+ * 格式头为 标记字节 + 编码标识 + 压缩标识，之后是（可能压缩过的）编码结果；超过阈值的内容才压缩。
+ * 旧版直接保存的 JSON（包括原 langchain4j RedisChatMemoryStore 保存的）以 '[' 开头，没有格式头，
+ * 读取时按 JSON 解码，下一次写入时自动转为当前格式。
+ */
+public class ChatMemorySerializer {
+
+    private static final byte MARKER = 0;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private static final byte COMPRESSION_NONE = 0;
+
+    private static final byte COMPRESSION_GZIP = 1;
+
+    private final ChatMessagesCodec codec;
+
+    private final boolean gzip;
+
+    private final int compressionThreshold;
+
+    /**
+     * 可读取的编码，按编码标识索引
+     */
+    private final Map<Byte, ChatMessagesCodec> codecs;
+
+    private final JsonChatMessagesCodec legacyCodec = new JsonChatMessagesCodec();
+
+    /**
+     * @param codec                写入使用的编码
+     * @param gzip                 是否压缩
+     * @param compressionThreshold 编码结果达到多少字节才压缩
+     */
+    public ChatMemorySerializer(ChatMessagesCodec codec, boolean gzip, int compressionThreshold) {
+        this.codec = codec;
+        this.gzip = gzip;
+        this.compressionThreshold = compressionThreshold;
+        this.codecs = Stream.of(codec, legacyCodec, new CompactChatMessagesCodec())
+                .collect(Collectors.toMap(ChatMessagesCodec::getId, Function.identity(), (first, second) -> first));
+    }
+
+    public byte[] serialize(List<ChatMessage> messages) {
+        byte[] encoded = codec.encode(messages);
+        boolean compress = gzip && encoded.length >= compressionThreshold;
+        byte[] body = compress ? gzip(encoded) : encoded;
+        byte[] data = new byte[HEADER_LENGTH + body.length];
+        data[0] = MARKER;
+        data[1] = codec.getId();
+        data[2] = compress ? COMPRESSION_GZIP : COMPRESSION_NONE;
+        System.arraycopy(body, 0, data, HEADER_LENGTH, body.length);
+        return data;
+    }
+
+    public List<ChatMessage> deserialize(byte[] data) {
+        if (data.length == 0 || data[0] != MARKER) {
+            return legacyCodec.decode(data);
+        }
+        if (data.length < HEADER_LENGTH) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆格式错误");
+        }
+        ChatMessagesCodec dataCodec = codecs.get(data[1]);
+        if (dataCodec == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "未知的对话记忆编码：" + data[1]);
+        }
+        byte[] body = Arrays.copyOfRange(data, HEADER_LENGTH, data.length);
+        return dataCodec.decode(data[2] == COMPRESSION_GZIP ? gunzip(body) : body);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆压缩失败：" + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆解压失败：" + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.aicodemother.ai.memory.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.List;
+
+/**
+ * 对话记忆消息列表编解码
+ */
+public interface ChatMessagesCodec {
+
+    /**
+     * @return 编码标识，写入存储格式的头部，读取时据此选择解码器
+     */
+    byte getId();
+
+    byte[] encode(List<ChatMessage> messages);
+
+    List<ChatMessage> decode(byte[] data);
+}
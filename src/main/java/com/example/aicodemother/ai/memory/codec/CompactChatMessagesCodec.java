@@ -0,0 +1,112 @@
+package com.example.aicodemother.ai.memory.codec;
+
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑二进制格式
+ * 每条消息为 类型字节 + 长度前缀的 UTF-8 文本，省去 JSON 的字段名、转义与内容包装；
+ * 带工具调用、多模态内容、思考过程或附加属性的消息不常见，按单条 JSON 保存，保证不丢信息
+ */
+public class CompactChatMessagesCodec implements ChatMessagesCodec {
+
+    public static final byte ID = 2;
+
+    private static final byte TYPE_JSON = 0;
+
+    private static final byte TYPE_SYSTEM = 1;
+
+    private static final byte TYPE_USER = 2;
+
+    private static final byte TYPE_AI = 3;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(List<ChatMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(messages.size());
+            for (ChatMessage message : messages) {
+                writeMessage(out, message);
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆编码失败：" + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public List<ChatMessage> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int size = in.readInt();
+            List<ChatMessage> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                messages.add(readMessage(in));
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆解码失败：" + e.getMessage());
+        }
+    }
+
+    private static void writeMessage(DataOutputStream out, ChatMessage message) throws IOException {
+        if (message instanceof SystemMessage systemMessage) {
+            out.writeByte(TYPE_SYSTEM);
+            writeString(out, systemMessage.text());
+        } else if (message instanceof UserMessage userMessage && userMessage.hasSingleText()
+                && userMessage.name() == null && userMessage.attributes().isEmpty()) {
+            out.writeByte(TYPE_USER);
+            writeString(out, userMessage.singleText());
+        } else if (message instanceof AiMessage aiMessage && !aiMessage.hasToolExecutionRequests()
+                && aiMessage.thinking() == null && aiMessage.attributes().isEmpty() && aiMessage.text() != null) {
+            out.writeByte(TYPE_AI);
+            writeString(out, aiMessage.text());
+        } else {
+            out.writeByte(TYPE_JSON);
+            writeString(out, ChatMessageSerializer.messageToJson(message));
+        }
+    }
+
+    private static ChatMessage readMessage(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String text = readString(in);
+        return switch (type) {
+            case TYPE_SYSTEM -> SystemMessage.from(text);
+            case TYPE_USER -> UserMessage.from(text);
+            case TYPE_AI -> AiMessage.from(text);
+            case TYPE_JSON -> ChatMessageDeserializer.messageFromJson(text);
+            default -> throw new IOException("未知的消息类型：" + type);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
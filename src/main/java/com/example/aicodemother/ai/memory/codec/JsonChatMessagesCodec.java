@@ -0,0 +1,31 @@
+package com.example.aicodemother.ai.memory.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * langchain4j 自带的 JSON 格式，与旧版存储格式相同
+ */
+public class JsonChatMessagesCodec implements ChatMessagesCodec {
+
+    public static final byte ID = 1;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(List<ChatMessage> messages) {
+        return ChatMessageSerializer.messagesToJson(messages).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<ChatMessage> decode(byte[] data) {
+        return ChatMessageDeserializer.messagesFromJson(new String(data, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.aicodemother.ai.routing;
+
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带对冲请求的路由流式模型
+ * 先调用第一个后端，首个 token 超过阈值仍未到达时再向下一个后端发起对冲请求，谁先输出就采用谁，其余请求取消；
+ * 首个 token 之前出错的后端立即切换到下一个后端。
+ * 未输出过内容的请求拿不到 StreamingHandle，只能在它第一次输出时取消。
+ */
+@Slf4j
+public class RoutingStreamingChatModel implements StreamingChatModel {
+
+    private static final String METRIC_PREFIX = "ai.model.routing";
+
+    private final List<String> backendNames;
+
+    private final List<StreamingChatModel> backends;
+
+    private final Duration hedgeDelay;
+
+    private final Scheduler timer;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param backends   按优先级排列的后端，key 为后端名称
+     * @param hedgeDelay 首个 token 等待多久后发起对冲请求
+     * @param timer      对冲定时器
+     */
+    public RoutingStreamingChatModel(Map<String, StreamingChatModel> backends, Duration hedgeDelay, Scheduler timer,
+                                     MeterRegistry meterRegistry) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个后端模型");
+        }
+        this.backendNames = new ArrayList<>(backends.keySet());
+        this.backends = new ArrayList<>(backends.values());
+        this.hedgeDelay = hedgeDelay;
+        this.timer = timer;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new RoutedCall(chatRequest, handler).launchNext();
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        chat(chatRequest, handler);
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return backends.get(0).supportedCapabilities();
+    }
+
+    private void count(String name, String backend) {
+        Counter.builder(METRIC_PREFIX + "." + name)
+                .tag("backend", backend)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 一次路由调用，可能包含多个后端请求
+     */
+    private class RoutedCall implements StreamingHandle {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        private volatile Attempt winner;
+
+        private Disposable hedgeTimer;
+
+        private volatile boolean cancelled;
+
+        RoutedCall(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+        }
+
+        /**
+         * 向下一个后端发起请求，并安排对冲定时
+         */
+        void launchNext() {
+            Attempt attempt;
+            synchronized (this) {
+                if (cancelled || winner != null || attempts.size() >= backends.size()) {
+                    return;
+                }
+                attempt = new Attempt(this, attempts.size());
+                attempts.add(attempt);
+                if (attempts.size() < backends.size()) {
+                    hedgeTimer = timer.schedule(this::hedge, hedgeDelay.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+            if (attempt.index > 0) {
+                count("hedge", backendNames.get(attempt.index));
+            }
+            try {
+                backends.get(attempt.index).chat(chatRequest, attempt);
+            } catch (Exception e) {
+                attempt.onError(e);
+            }
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (winner != null || cancelled) {
+                    return;
+                }
+            }
+            log.info("首个 token 超过 {} ms 未到达，发起对冲请求", hedgeDelay.toMillis());
+            launchNext();
+        }
+
+        /**
+         * 首次输出的请求胜出，其余请求取消
+         *
+         * @return 该请求是否为胜出的请求
+         */
+        boolean claim(Attempt attempt, StreamingHandle attemptHandle) {
+            List<Attempt> losers = new ArrayList<>();
+            synchronized (this) {
+                if (winner == null && !cancelled) {
+                    winner = attempt;
+                    if (hedgeTimer != null) {
+                        hedgeTimer.dispose();
+                    }
+                    for (Attempt other : attempts) {
+                        if (other != attempt) {
+                            losers.add(other);
+                        }
+                    }
+                    if (attempt.index > 0) {
+                        count("hedge.won", backendNames.get(attempt.index));
+                    }
+                }
+            }
+            losers.forEach(Attempt::abandon);
+            if (winner == attempt && !cancelled) {
+                attempt.handle = attemptHandle;
+                return true;
+            }
+            attempt.cancel(attemptHandle);
+            return false;
+        }
+
+        /**
+         * 首个 token 之前出错，切换到下一个后端；没有可用后端时才向调用方报错
+         */
+        void failed(Attempt attempt, Throwable error) {
+            boolean forward;
+            boolean next;
+            synchronized (this) {
+                if (winner == attempt) {
+                    forward = true;
+                    next = false;
+                } else if (winner != null || cancelled) {
+                    return;
+                } else {
+                    attempt.abandoned = true;
+                    boolean pending = attempts.stream().anyMatch(other -> !other.abandoned);
+                    next = attempts.size() < backends.size();
+                    forward = !pending && !next;
+                    if (next && hedgeTimer != null) {
+                        hedgeTimer.dispose();
+                    }
+                }
+            }
+            if (forward) {
+                handler.onError(error);
+                return;
+            }
+            log.warn("后端 {} 在首个 token 之前出错，改用其他后端", backendNames.get(attempt.index), error);
+            count("fallback", backendNames.get(attempt.index));
+            if (next) {
+                launchNext();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            Attempt toCancel;
+            List<Attempt> others = new ArrayList<>();
+            synchronized (this) {
+                cancelled = true;
+                if (hedgeTimer != null) {
+                    hedgeTimer.dispose();
+                }
+                toCancel = winner;
+                for (Attempt attempt : attempts) {
+                    if (attempt != winner) {
+                        others.add(attempt);
+                    }
+                }
+            }
+            others.forEach(Attempt::abandon);
+            if (toCancel != null && toCancel.handle != null) {
+                toCancel.handle.cancel();
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 单个后端请求
+     */
+    private static class Attempt implements StreamingChatResponseHandler {
+
+        /**
+         * 后端只回调旧版无上下文的方法时没有可用的取消句柄
+         */
+        private static final StreamingHandle NO_HANDLE = new StreamingHandle() {
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
+        private final RoutedCall call;
+
+        private final int index;
+
+        private volatile StreamingHandle handle;
+
+        private volatile boolean abandoned;
+
+        Attempt(RoutedCall call, int index) {
+            this.call = call;
+            this.index = index;
+        }
+
+        void abandon() {
+            abandoned = true;
+            StreamingHandle current = handle;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        void cancel(StreamingHandle attemptHandle) {
+            abandoned = true;
+            if (attemptHandle != null && !attemptHandle.isCancelled()) {
+                attemptHandle.cancel();
+            }
+        }
+
+        private boolean isWinner(StreamingHandle attemptHandle) {
+            if (call.winner == this) {
+                if (call.cancelled) {
+                    cancel(attemptHandle);
+                    return false;
+                }
+                return true;
+            }
+            if (abandoned) {
+                cancel(attemptHandle);
+                return false;
+            }
+            return call.claim(this, attemptHandle);
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            onPartialResponse(new PartialResponse(partialResponse), new PartialResponseContext(NO_HANDLE));
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            if (isWinner(context.streamingHandle())) {
+                call.handler.onPartialResponse(partialResponse, new PartialResponseContext(call));
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            if (isWinner(context.streamingHandle())) {
+                call.handler.onPartialThinking(partialThinking, new PartialThinkingContext(call));
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            if (isWinner(context.streamingHandle())) {
+                call.handler.onPartialToolCall(partialToolCall, new PartialToolCallContext(call));
+            }
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            if (isWinner(null)) {
+                call.handler.onCompleteToolCall(completeToolCall);
+            }
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            // 没有任何输出就结束的请求同样按先到先得处理
+            if (isWinner(null)) {
+                call.handler.onCompleteResponse(completeResponse);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (abandoned && call.winner != this) {
+                return;
+            }
+            call.failed(this, error);
+        }
+    }
+}
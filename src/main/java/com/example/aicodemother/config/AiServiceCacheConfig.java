@@ -0,0 +1,54 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对话记忆缓存配置
+ * 所有应用共用一个 AI 服务实例，按应用缓存的只是轻量的对话记忆对象（消息存储在 Redis 中）；
+ * 记忆创建时需要从数据库加载对话历史，在独立线程池中异步加载，不阻塞请求线程
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.ai-service-cache")
+@Data
+public class AiServiceCacheConfig {
+
+    /**
+     * 最多缓存的应用数，按活跃应用数设置
+     */
+    private long maximumSize = 5000;
+
+    private Duration expireAfterWrite = Duration.ofMinutes(30);
+
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+
+    /**
+     * 写入多久后在后台重新创建对话记忆（Redis 中的记忆已过期时从数据库加载），需小于 expireAfterWrite；
+     * 为空则不刷新，到期后由下一次请求重新创建
+     */
+    private Duration refreshAfterWrite;
+
+    /**
+     * 加载对话记忆的线程数
+     */
+    private int loaderThreads = 4;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService aiServiceLoaderExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ai-service-loader-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(loaderThreads, threadFactory);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.aicodemother.config;
+
+import com.example.aicodemother.ai.memory.codec.ChatMemorySerializer;
+import com.example.aicodemother.ai.memory.codec.CompactChatMessagesCodec;
+import com.example.aicodemother.ai.memory.codec.JsonChatMessagesCodec;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+
+/**
+ * 对话记忆配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.memory")
+@Data
+public class ChatMemoryConfig {
+
+    /**
+     * 对话记忆的 token 预算（本地估算），超出时从最早的消息开始淘汰；
+     * 系统消息与最新一版代码不计入，预算按一个完整页面（约 20KB HTML，约 8000 token）的对话量设置
+     */
+    private int maxTokens = 24000;
+
+    /**
+     * 创建 AI 实例时最多从数据库加载的历史消息数，加载后仍按 token 预算裁剪
+     */
+    private int loadMaxCount = 20;
+
+    /**
+     * 进程内一级缓存最多保存的对话记忆数
+     */
+    private long localMaximumSize = 10000;
+
+    /**
+     * 一级缓存中的对话记忆多久未访问后移除
+     */
+    private Duration localExpireAfterAccess = Duration.ofMinutes(10);
+
+    /**
+     * 一级缓存中的对话记忆写入多久后移除，即使一直被访问也重新从 Redis 读取，
+     * 失效通知丢失时（如订阅连接断开期间）一级缓存的过期数据最多保留这么久
+     */
+    private Duration localExpireAfterWrite = Duration.ofMinutes(30);
+
+    /**
+     * Redis 中对话记忆的编码：compact（紧凑二进制）或 json；切换后旧数据仍可读取
+     */
+    private String codec = "compact";
+
+    /**
+     * 是否对编码结果做 gzip 压缩
+     */
+    private boolean compression = true;
+
+    /**
+     * 编码结果达到多少字节才压缩，过小的内容压缩收益不抵开销
+     */
+    private int compressionThreshold = 1024;
+
+    /**
+     * Redis 中没有对话记忆时，是否读取原 langchain4j RedisChatMemoryStore 保存的记忆并转为当前格式
+     */
+    private boolean migrateLegacyStore = true;
+
+    /**
+     * 原 RedisChatMemoryStore 的键前缀，键为 前缀 + appId；原配置未设置前缀，默认为空
+     */
+    private String legacyKeyPrefix = "";
+
+    /**
+     * 对话记忆在 Redis 中的存储格式
+     */
+    @Bean
+    public ChatMemorySerializer chatMemorySerializer() {
+        return new ChatMemorySerializer("json".equals(codec) ? new JsonChatMessagesCodec() : new CompactChatMessagesCodec(),
+                compression, compressionThreshold);
+    }
+
+    /**
+     * 接收对话记忆失效通知的监听容器
+     */
+    @Bean
+    public RedisMessageListenerContainer chatMemoryListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+}
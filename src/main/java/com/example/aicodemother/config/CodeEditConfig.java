@@ -0,0 +1,19 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 修改模式配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.edit")
+@Data
+public class CodeEditConfig {
+
+    /**
+     * 应用已有代码时，模型只输出查找替换补丁，补丁无法应用时改为完整生成
+     */
+    private boolean enabled = false;
+}
@@ -0,0 +1,19 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成代码保存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.saver")
+@Data
+public class CodeGenSaverConfig {
+
+    /**
+     * 是否边生成边写文件（临时文件 + 代码块闭合时原子发布），关闭则在流结束后统一保存
+     */
+    private boolean streaming = true;
+}
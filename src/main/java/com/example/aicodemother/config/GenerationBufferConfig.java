@@ -0,0 +1,19 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成输出缓冲区配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.buffer")
+@Data
+public class GenerationBufferConfig {
+
+    /**
+     * 单次生成允许缓冲的最大字符数，超过后终止生成
+     */
+    private int maxChars = 2_000_000;
+}
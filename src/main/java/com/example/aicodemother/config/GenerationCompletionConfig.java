@@ -0,0 +1,54 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成收尾阶段线程池配置
+ * 代码解析保存、对话历史入库等阻塞操作统一在该线程池执行，不占用模型流的回调线程
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.completion")
+@Data
+public class GenerationCompletionConfig {
+
+    /**
+     * 并发执行的收尾任务数
+     */
+    private int poolSize = 8;
+
+    /**
+     * 等待队列容量，队列满时拒绝新任务
+     */
+    private int queueCapacity = 500;
+
+    /**
+     * 是否使用虚拟线程执行收尾任务
+     */
+    private boolean virtualThreads = false;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor generationCompletionExecutor() {
+        ThreadFactory threadFactory;
+        if (virtualThreads) {
+            threadFactory = Thread.ofVirtual().name("gen-completion-vt-", 0).factory();
+        } else {
+            AtomicInteger index = new AtomicInteger();
+            threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "gen-completion-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
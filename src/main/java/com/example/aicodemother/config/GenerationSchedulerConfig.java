@@ -0,0 +1,43 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 生成准入调度配置，限制同时调用模型的生成数，保护上游模型配额
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.scheduler")
+@Data
+public class GenerationSchedulerConfig {
+
+    /**
+     * 全局最多同时进行的生成数
+     */
+    private int maxConcurrent = 20;
+
+    /**
+     * 全局最多排队的请求数，超过后直接拒绝
+     */
+    private int maxQueueSize = 200;
+
+    /**
+     * 排队最长等待时间
+     */
+    private Duration queueTimeout = Duration.ofMinutes(2);
+
+    /**
+     * 用户默认权重，权重越大在公平队列中获得的份额越多
+     */
+    private int defaultWeight = 1;
+
+    /**
+     * 指定用户的权重，key 为 userId
+     */
+    private Map<Long, Integer> userWeights = new HashMap<>();
+}
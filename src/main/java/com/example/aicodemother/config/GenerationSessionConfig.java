@@ -0,0 +1,31 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 应用生成会话配置，同一应用同一时刻只允许一个生成在进行
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.session")
+@Data
+public class GenerationSessionConfig {
+
+    /**
+     * 冲突处理方式：join / queue，见 GenConflictModeEnum
+     */
+    private String mode = "join";
+
+    /**
+     * 每个应用最多排队的请求数
+     */
+    private int queueCapacity = 3;
+
+    /**
+     * 排队最长等待时间
+     */
+    private Duration queueTimeout = Duration.ofMinutes(5);
+}
@@ -0,0 +1,41 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 可续传生成流配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.stream")
+@Data
+public class GenerationStreamConfig {
+
+    /**
+     * 进程内环形缓冲区保留的片段数
+     */
+    private int ringCapacity = 2048;
+
+    /**
+     * 缓冲区满时一次溢出到 Redis 的片段数
+     */
+    private int spillBatch = 512;
+
+    /**
+     * 所有连接断开后继续生成的时间，期间可以续传，超时后取消模型调用
+     */
+    private Duration resumeGrace = Duration.ofSeconds(30);
+
+    /**
+     * 生成结束后仍可续传的时间
+     */
+    private Duration retention = Duration.ofMinutes(2);
+
+    /**
+     * 生成进行中溢出片段在 Redis 中的过期时间
+     */
+    private Duration spillTtl = Duration.ofMinutes(30);
+}
@@ -0,0 +1,101 @@
+package com.example.aicodemother.config;
+
+import cn.hutool.core.util.StrUtil;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式模型路由配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.model-routing")
+@Data
+public class ModelRoutingConfig {
+
+    /**
+     * 默认流式模型作为路由后端时的名称
+     */
+    public static final String DEFAULT_BACKEND = "default";
+
+    /**
+     * 是否启用路由，启用且配置了后端时生效
+     */
+    private boolean enabled = false;
+
+    /**
+     * 排在默认流式模型之后的 OpenAI 兼容后端，按优先级排列
+     */
+    private List<Backend> backends = new ArrayList<>();
+
+    /**
+     * 首个 token 超过该时间仍未到达时向下一个后端发起对冲请求
+     */
+    private Duration hedgeDelay = Duration.ofSeconds(3);
+
+    /**
+     * 创建路由后端，默认流式模型排在第一位
+     *
+     * @param defaultModel 默认流式模型
+     * @return 按优先级排列的后端，key 为后端名称
+     */
+    public Map<String, StreamingChatModel> buildBackends(StreamingChatModel defaultModel) {
+        Map<String, StreamingChatModel> models = new LinkedHashMap<>();
+        models.put(DEFAULT_BACKEND, defaultModel);
+        for (int i = 0; i < backends.size(); i++) {
+            Backend backend = backends.get(i);
+            if (StrUtil.hasBlank(backend.getBaseUrl(), backend.getModelName())) {
+                // 只输出位置和名称，不输出整个后端配置，避免 api-key 进入日志
+                throw new IllegalStateException(StrUtil.format("模型路由后端缺少 base-url 或 model-name：backends[{}]（{}）",
+                        i, StrUtil.blankToDefault(backend.getName(), "未命名")));
+            }
+            String name = StrUtil.blankToDefault(backend.getName(), backend.getModelName());
+            if (models.containsKey(name)) {
+                throw new IllegalStateException("模型路由后端名称重复：" + name);
+            }
+            models.put(name, OpenAiStreamingChatModel.builder()
+                    .baseUrl(backend.getBaseUrl())
+                    .apiKey(backend.getApiKey())
+                    .modelName(backend.getModelName())
+                    .timeout(backend.getTimeout())
+                    .build());
+        }
+        return models;
+    }
+
+    /**
+     * OpenAI 兼容接口的模型后端
+     */
+    @Data
+    public static class Backend {
+
+        /**
+         * 后端名称，用于日志与指标，默认取模型名称
+         */
+        private String name;
+
+        /**
+         * 接口地址，如 https://api.deepseek.com/v1
+         */
+        private String baseUrl;
+
+        @ToString.Exclude
+        private String apiKey;
+
+        private String modelName;
+
+        /**
+         * 单次请求超时时间
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+    }
+}
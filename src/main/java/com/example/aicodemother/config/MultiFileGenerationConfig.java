@@ -0,0 +1,20 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 多文件生成配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.multi-file")
+@Data
+public class MultiFileGenerationConfig {
+
+    /**
+     * 是否并行生成：先生成结构规划，再同时生成 index.html、style.css、script.js
+     * 一次生成只占用一个调度名额，却会发起四次模型调用（其中三次同时进行），开启时应相应调低 code-gen.scheduler.max-concurrent
+     */
+    private boolean parallel = false;
+}
@@ -1,31 +1,19 @@
 package com.example.aicodemother.config;
 
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * 对话记忆在 Redis 中的过期时间，读写由 {@link com.example.aicodemother.ai.memory.TwoTierChatMemoryStore} 完成
+ */
 @Configuration
 @ConfigurationProperties(prefix = "spring.data.redis")
 @Data
 public class RedisChatMemoryStoreConfig {
 
-    private String host;
-
-    private int port;
-
-    private String password;
-
+    /**
+     * 过期时间（秒）
+     */
     private long ttl;
-
-    @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        return RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .password(password)
-                .ttl(ttl)
-                .build();
-    }
 }
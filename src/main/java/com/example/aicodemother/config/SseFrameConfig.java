@@ -0,0 +1,53 @@
+package com.example.aicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 生成接口 SSE 帧合并配置，多个 token 合并为一帧推送，减少帧数与系统调用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.sse")
+@Data
+public class SseFrameConfig {
+
+    /**
+     * 默认合并时间窗口，为 0 时每个 token 单独一帧
+     */
+    private Duration window = Duration.ofMillis(40);
+
+    /**
+     * 客户端指定帧率时允许的最小时间窗口
+     */
+    private Duration minWindow = Duration.ofMillis(10);
+
+    /**
+     * 客户端指定帧率时允许的最大时间窗口
+     */
+    private Duration maxWindow = Duration.ofSeconds(1);
+
+    /**
+     * 单帧累积的最大字符数，达到后立即推送
+     */
+    private int maxFrameChars = 4096;
+
+    /**
+     * 按客户端期望的帧率计算合并窗口
+     *
+     * @param frameRate 每秒帧数，为空时使用默认窗口
+     * @return 合并窗口
+     */
+    public Duration resolveWindow(Integer frameRate) {
+        if (frameRate == null || frameRate <= 0) {
+            return window;
+        }
+        Duration requested = Duration.ofMillis(1000L / frameRate);
+        if (requested.compareTo(minWindow) < 0) {
+            return minWindow;
+        }
+        return requested.compareTo(maxWindow) > 0 ? maxWindow : requested;
+    }
+}
@@ -14,6 +14,11 @@ public interface AppConstant {
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * 代码文件内容寻址存储目录（存储对象与目录清单）
+     */
+    String CODE_STORE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_store";
+
     /**
      * 应用部署域名
      */
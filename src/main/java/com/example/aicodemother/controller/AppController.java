@@ -7,8 +7,14 @@ import com.example.aicodemother.annotation.AuthCheck;
 import com.example.aicodemother.common.BaseResponse;
 import com.example.aicodemother.common.DeleteRequest;
 import com.example.aicodemother.common.ResultUtils;
+import com.example.aicodemother.config.SseFrameConfig;
 import com.example.aicodemother.constant.AppConstant;
 import com.example.aicodemother.constant.UserConstant;
+import com.example.aicodemother.cores.sse.SseFrameCoalescer;
+import com.example.aicodemother.cores.sse.SseJsonFrameEncoder;
+import com.example.aicodemother.cores.stream.GenerationChunk;
+import com.example.aicodemother.cores.stream.GenerationListener;
+import com.example.aicodemother.cores.stream.GenerationStream;
 import com.example.aicodemother.exception.BusinessException;
 import com.example.aicodemother.exception.ErrorCode;
 import com.example.aicodemother.exception.ThrowUtils;
@@ -16,6 +22,7 @@ import com.example.aicodemother.model.dto.app.*;
 import com.example.aicodemother.model.entity.App;
 import com.example.aicodemother.model.entity.User;
 import com.example.aicodemother.model.vo.AppVO;
+import com.example.aicodemother.model.vo.AppVersionVO;
 import com.example.aicodemother.service.AppService;
 import com.example.aicodemother.service.UserService;
 import com.mybatisflex.core.paginate.Page;
@@ -27,12 +34,15 @@ import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -45,12 +55,20 @@ import java.util.Map;
 @RequestMapping("/app")
 public class AppController {
 
+    /**
+     * SSE 事件 id 中生成 ID 与片段序号的分隔符
+     */
+    private static final String EVENT_ID_SEPARATOR = ":";
+
     @Autowired
     private AppService appService;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SseFrameConfig sseFrameConfig;
+
     /**
      * 应用部署
      *
@@ -71,22 +89,170 @@ public class AppController {
     }
 
 
+    /**
+     * 查询应用代码的版本列表，最新的在前
+     *
+     * @param appId   应用 ID
+     * @param request 请求
+     * @return 版本列表
+     */
+    @GetMapping("/version/list")
+    public BaseResponse<List<AppVersionVO>> listAppVersions(@RequestParam Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.listAppVersions(appId, loginUser));
+    }
+
+    /**
+     * 查询应用代码的指定版本，包含文件内容
+     *
+     * @param appId   应用 ID
+     * @param version 版本号
+     * @param request 请求
+     * @return 版本信息
+     */
+    @GetMapping("/version/get")
+    public BaseResponse<AppVersionVO> getAppVersion(@RequestParam Long appId, @RequestParam Integer version,
+                                                    HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.getAppVersion(appId, version, loginUser));
+    }
+
+    /**
+     * 将应用代码恢复到指定版本，仅本人可以恢复；只替换本地文件，不调用模型，已部署的应用需重新部署
+     *
+     * @param appVersionRestoreRequest 恢复请求
+     * @param request                  请求
+     * @return 恢复后的版本
+     */
+    @PostMapping("/version/restore")
+    public BaseResponse<AppVersionVO> restoreAppVersion(@RequestBody AppVersionRestoreRequest appVersionRestoreRequest,
+                                                        HttpServletRequest request) {
+        ThrowUtils.throwIf(appVersionRestoreRequest == null, ErrorCode.PARAMS_ERROR);
+        Long appId = appVersionRestoreRequest.getAppId();
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.restoreAppVersion(appId, appVersionRestoreRequest.getVersion(), loginUser));
+    }
+
+    /**
+     * 对话生成代码（SSE）
+     * 内容事件的 id 为「生成 ID:片段序号」，连接断开后浏览器携带 Last-Event-ID 重连时从断点续传，不会重新生成
+     *
+     * @param message     用户消息
+     * @param appId       应用 ID
+     * @param fps         期望的每秒推送帧数，多个 token 合并为一帧，不传时使用服务端默认窗口
+     * @param lastEventId 断线重连时浏览器自动携带的最后一个事件 id
+     * @param request     请求
+     * @return 生成内容事件流
+     */
     @GetMapping("/chat/gen/code")
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam String message,
                                                        @RequestParam Long appId,
+                                                       @RequestParam(required = false) Integer fps,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
                                                        HttpServletRequest request) {
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "message不能为空");
         ThrowUtils.throwIf(appId == null, ErrorCode.PARAMS_ERROR, "appId不能为空");
         User loginUser = userService.getLoginUser(request);
-        Flux<String> contentFlux = appService.chatToGenCode(message, loginUser, appId);
-        return contentFlux
-                .map(chunk -> {
-                    Map<Character, String> map = Map.of('d', chunk);
-                    String jsonData = JSONUtil.toJsonStr(map);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
+        // 排队位置、生成 ID 与保存后变化的文件通过 queue、generation、files 事件推送给前端
+        Sinks.Many<ServerSentEvent<String>> controlEvents = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationChunk> contentFlux;
+        if (StrUtil.isNotBlank(lastEventId)) {
+            contentFlux = resume(appId, lastEventId, loginUser);
+        } else {
+            contentFlux = appService.chatToGenCode(message, loginUser, appId, new GenerationListener() {
+                @Override
+                public void onQueuePosition(int position) {
+                    emitControlEvent(controlEvents, ServerSentEvent.<String>builder()
+                            .event("queue")
+                            .data(JSONUtil.toJsonStr(Map.of("position", position)))
+                            .build());
+                }
+
+                @Override
+                public void onStart(String generationId) {
+                    emitControlEvent(controlEvents, generationEvent(generationId));
+                }
+
+                @Override
+                public void onFilesSaved(List<String> changedFiles) {
+                    emitControlEvent(controlEvents, ServerSentEvent.<String>builder()
+                            .event("files")
+                            .data(JSONUtil.toJsonStr(Map.of("changedFiles", changedFiles)))
+                            .build());
+                }
+            });
+        }
+        return toEventStream(contentFlux, fps, controlEvents);
+    }
+
+    /**
+     * 观看应用进行中的生成（SSE）
+     * 从头回放已生成的内容后继续接收实时输出，多个观看者共享同一次模型调用
+     *
+     * @param appId       应用 ID
+     * @param fps         期望的每秒推送帧数
+     * @param lastEventId 断线重连时浏览器自动携带的最后一个事件 id
+     * @param request     请求
+     * @return 生成内容事件流
+     */
+    @GetMapping("/chat/gen/observe")
+    public Flux<ServerSentEvent<String>> observeGenCode(@RequestParam Long appId,
+                                                        @RequestParam(required = false) Integer fps,
+                                                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                                        HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "appId不能为空");
+        User loginUser = userService.getLoginUser(request);
+        Sinks.Many<ServerSentEvent<String>> controlEvents = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationChunk> contentFlux;
+        if (StrUtil.isNotBlank(lastEventId)) {
+            contentFlux = resume(appId, lastEventId, loginUser);
+        } else {
+            GenerationStream stream = appService.getRunningGeneration(appId, loginUser);
+            emitControlEvent(controlEvents, generationEvent(stream.getGenerationId()));
+            contentFlux = stream.subscribe(-1);
+        }
+        return toEventStream(contentFlux, fps, controlEvents);
+    }
+
+    private Flux<GenerationChunk> resume(Long appId, String lastEventId, User loginUser) {
+        String generationId = StrUtil.subBefore(lastEventId, EVENT_ID_SEPARATOR, true);
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(StrUtil.subAfter(lastEventId, EVENT_ID_SEPARATOR, true));
+        } catch (NumberFormatException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误");
+        }
+        return appService.resumeGenCode(appId, generationId, lastSeq, loginUser);
+    }
+
+    /**
+     * 序号 -1 表示尚未收到任何内容，此时断线重连从头续传
+     */
+    private static ServerSentEvent<String> generationEvent(String generationId) {
+        return ServerSentEvent.<String>builder()
+                .id(generationId + EVENT_ID_SEPARATOR + "-1")
+                .event("generation")
+                .data(JSONUtil.toJsonStr(Map.of("generationId", generationId)))
+                .build();
+    }
+
+    /**
+     * 合并内容帧并与排队、生成 ID 等控制事件一起输出，最后发送 done 事件
+     */
+    private Flux<ServerSentEvent<String>> toEventStream(Flux<GenerationChunk> contentFlux, Integer fps,
+                                                        Sinks.Many<ServerSentEvent<String>> controlEvents) {
+        SseJsonFrameEncoder frameEncoder = new SseJsonFrameEncoder();
+        Flux<ServerSentEvent<String>> contentEvents = SseFrameCoalescer.coalesce(contentFlux,
+                        sseFrameConfig.resolveWindow(fps), sseFrameConfig.getMaxFrameChars())
+                .map(frame -> ServerSentEvent.<String>builder()
+                        .id(frame.getGenerationId() + EVENT_ID_SEPARATOR + frame.getSeq())
+                        .data(frameEncoder.encode(frame.getText()))
+                        .build())
+                .doFinally(signal -> controlEvents.tryEmitComplete());
+        return Flux.merge(controlEvents.asFlux(), contentEvents)
                 .concatWith(Mono.just(ServerSentEvent.<String>builder()
                         .event("done")
                         .data("")
@@ -94,6 +260,10 @@ public class AppController {
                 ));
     }
 
+    private static void emitControlEvent(Sinks.Many<ServerSentEvent<String>> controlEvents, ServerSentEvent<String> event) {
+        controlEvents.emitNext(event, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+    }
+
     /**
      * 添加应用接口
      *
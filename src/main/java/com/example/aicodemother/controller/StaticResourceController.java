@@ -1,6 +1,7 @@
 package com.example.aicodemother.controller;
 
 import com.example.aicodemother.constant.AppConstant;
+import com.example.aicodemother.cores.store.CodeFileStore;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
@@ -51,16 +52,49 @@ public class StaticResourceController {
             if (!file.exists()) {
                 return ResponseEntity.notFound().build();
             }
+            // 客户端接受 gzip 且保存时已生成压缩版本时直接返回压缩文件，不再按请求压缩
+            File gzipFile = new File(filePath + CodeFileStore.GZIP_SUFFIX);
+            if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) && gzipFile.isFile()) {
+                return ResponseEntity.ok()
+                        .header("Content-Type", getContentTypeWithCharset(filePath))
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                        .body(new FileSystemResource(gzipFile));
+            }
             // 返回文件资源
             Resource resource = new FileSystemResource(file);
             return ResponseEntity.ok()
                     .header("Content-Type", getContentTypeWithCharset(filePath))
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
                     .body(resource);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Accept-Encoding 中是否接受 gzip（含通配符 *），q=0 表示不接受
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            if (!coding.equals("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                if (params[i].trim().matches("[qQ]\\s*=\\s*0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
     /**
      * 根据文件扩展名返回带字符编码的 Content-Type
      */
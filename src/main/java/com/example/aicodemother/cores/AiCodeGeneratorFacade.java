@@ -2,19 +2,38 @@ package com.example.aicodemother.cores;
 
 import com.example.aicodemother.ai.AiCodeGeneratorService;
 import com.example.aicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.example.aicodemother.ai.TokenStreamFlux;
+import com.example.aicodemother.ai.memory.CodeMessageCompactor;
+import com.example.aicodemother.ai.memory.TokenBudgetChatMemory;
 import com.example.aicodemother.ai.model.HtmlCodeResult;
 import com.example.aicodemother.ai.model.MultiFileCodeResult;
+import com.example.aicodemother.config.CodeEditConfig;
+import com.example.aicodemother.config.CodeGenSaverConfig;
+import com.example.aicodemother.config.GenerationBufferConfig;
+import com.example.aicodemother.config.MultiFileGenerationConfig;
+import com.example.aicodemother.cores.buffer.GenerationChunkBuffer;
+import com.example.aicodemother.cores.completion.GenerationCompletionStage;
+import com.example.aicodemother.cores.parallel.ParallelMultiFileCodeGenerator;
+import com.example.aicodemother.cores.parser.CodeFileCollector;
 import com.example.aicodemother.cores.parser.CodeParserExecutor;
+import com.example.aicodemother.cores.parser.StreamingCodeParser;
+import com.example.aicodemother.cores.patch.CodePatchParser;
 import com.example.aicodemother.cores.saver.CodeFileSaverExecutor;
+import com.example.aicodemother.cores.saver.PatchCodeFileSaver;
+import com.example.aicodemother.cores.saver.StreamingCodeFileSaver;
+import com.example.aicodemother.cores.stream.GenerationListener;
 import com.example.aicodemother.exception.BusinessException;
 import com.example.aicodemother.exception.ErrorCode;
 import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -23,26 +42,84 @@ import java.io.File;
 @Service
 public class AiCodeGeneratorFacade {
 
+    /**
+     * 补丁无法应用、改为完整生成时推送给客户端的提示
+     */
+    private static final String EDIT_FALLBACK_NOTICE = "\n\n修改无法直接应用，正在重新生成完整代码……\n\n";
+
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    @Resource
+    private CodeGenSaverConfig codeGenSaverConfig;
+
+    @Resource
+    private GenerationCompletionStage generationCompletionStage;
 
+    @Resource
+    private GenerationBufferConfig generationBufferConfig;
 
-    private Flux<String> processCodeStreaming(Flux<String> code, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
-        StringBuilder codeBuilder = new StringBuilder();
+    @Resource
+    private MultiFileGenerationConfig multiFileGenerationConfig;
+
+    @Resource
+    private ParallelMultiFileCodeGenerator parallelMultiFileCodeGenerator;
+
+    @Resource
+    private CodeEditConfig codeEditConfig;
+
+
+    /**
+     * 边接收边解析代码块，流结束时直接组装解析结果并在收尾线程池中保存，无需再对完整输出做正则匹配
+     */
+    private Flux<String> processCodeStreaming(Flux<String> code, CodeGenTypeEnum codeGenTypeEnum,Long appId,
+                                              GenerationChunkBuffer chunkBuffer, GenerationListener listener) {
+        // 输出只在共享缓冲区中保留一份，对话历史入库时从同一缓冲区读取
+        code = code.doOnNext(chunkBuffer::append)
+                .doOnComplete(chunkBuffer::markComplete);
+        if (codeGenSaverConfig.isStreaming()) {
+            return processCodeStreamingToFile(code, codeGenTypeEnum, appId, listener);
+        }
+        CodeFileCollector collector = new CodeFileCollector();
+        StreamingCodeParser parser = new StreamingCodeParser(codeGenTypeEnum, collector);
         return code
-                .doOnNext(codeBuilder::append)
-                .doOnComplete(() ->{
+                .doOnNext(parser::feed)
+                .concatWith(generationCompletionStage.run("saveCode", () -> {
                     try {
-                        String resultCode = codeBuilder.toString();
-                        Object result = CodeParserExecutor.executeParser(resultCode, codeGenTypeEnum);
+                        parser.finish();
+                        Object result = collector.toResult(codeGenTypeEnum);
                         File file = CodeFileSaverExecutor.executeSaver(result, codeGenTypeEnum,appId);
                         log.info("文件保存成功：{}", file.getAbsolutePath());
                     } catch (Exception e) {
                         log.error("文件保存失败：{}", e.getMessage(), e);
                     }
-                });
+                }).then(Mono.empty()));
     }
+    /**
+     * 边接收边写入临时文件，流正常结束时原子发布
+     */
+    private Flux<String> processCodeStreamingToFile(Flux<String> code, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                                    GenerationListener listener) {
+        StreamingCodeFileSaver saver = CodeFileSaverExecutor.createStreamingSaver(codeGenTypeEnum, appId);
+        StreamingCodeParser parser = new StreamingCodeParser(codeGenTypeEnum, saver);
+        // 模型流出错或被取消时丢弃临时文件，模型流结束后的保存不受客户端断开影响
+        return code
+                .doOnNext(parser::feed)
+                .doOnError(e -> saver.abort())
+                .doOnCancel(saver::abort)
+                .concatWith(generationCompletionStage.run("saveCode", () -> {
+                    try {
+                        parser.finish();
+                        File file = saver.complete();
+                        log.info("文件保存成功：{}，变化的文件：{}", file.getAbsolutePath(), saver.getChangedFiles());
+                        listener.onFilesSaved(saver.getChangedFiles());
+                    } catch (Exception e) {
+                        saver.abort();
+                        log.error("文件保存失败：{}", e.getMessage(), e);
+                    }
+                }).then(Mono.empty()));
+    }
+
     private File processCode(Object result, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
         return CodeFileSaverExecutor.executeSaver(result, codeGenTypeEnum,appId);
     }
@@ -61,11 +138,11 @@ public class AiCodeGeneratorFacade {
         AiCodeGeneratorService aiCodeGeneratorService=aiCodeGeneratorServiceFactory.getOrCreateAiCodeGeneratorService(appId);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(userMessage);
+                HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
                 yield processCode(htmlCodeResult, codeGenTypeEnum,appId);
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+                MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
                 yield processCode(multiFileCodeResult, codeGenTypeEnum,appId);
             }
             default -> {
@@ -83,19 +160,52 @@ public class AiCodeGeneratorFacade {
      * @return 保存的目录
      */
     public Flux<String> generateAndSaveCodeStreaming(String userMessage, CodeGenTypeEnum codeGenTypeEnum,Long appId) {
+        return generateAndSaveCodeStreaming(userMessage, codeGenTypeEnum, appId,
+                new GenerationChunkBuffer(generationBufferConfig.getMaxChars()), new GenerationListener() {
+                });
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码，输出写入调用方提供的缓冲区
+     *
+     * @param userMessage     用户提示词
+     * @param codeGenTypeEnum 生成类型
+     * @param chunkBuffer     本次生成的输出缓冲区
+     * @param listener        文件保存后回调变化的文件
+     * @return 代码流
+     */
+    public Flux<String> generateAndSaveCodeStreaming(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                                     GenerationChunkBuffer chunkBuffer, GenerationListener listener) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
-        AiCodeGeneratorService aiCodeGeneratorService=aiCodeGeneratorServiceFactory.getOrCreateAiCodeGeneratorService(appId);
+        // 实例未缓存时在加载线程池中创建并加载对话历史，不阻塞调用线程
+        return aiCodeGeneratorServiceFactory.getAiCodeGeneratorServiceAsync(appId)
+                .flatMapMany(aiCodeGeneratorService -> {
+                    if (codeEditConfig.isEnabled()) {
+                        PatchCodeFileSaver patchSaver = CodeFileSaverExecutor.createPatchSaver(codeGenTypeEnum, appId);
+                        String appFiles = CodeMessageCompactor.renderAppFiles(patchSaver.getDirPath());
+                        // 首次生成没有可修改的文件
+                        if (appFiles != null) {
+                            return editCodeStreaming(aiCodeGeneratorService, userMessage, appFiles, patchSaver,
+                                    codeGenTypeEnum, appId, chunkBuffer, listener);
+                        }
+                    }
+                    return processCodeStreaming(generateCodeStreaming(aiCodeGeneratorService, appId, userMessage, codeGenTypeEnum),
+                            codeGenTypeEnum, appId, chunkBuffer, listener);
+                });
+    }
+
+    /**
+     * 根据类型调用模型完整生成代码
+     */
+    private Flux<String> generateCodeStreaming(AiCodeGeneratorService aiCodeGeneratorService, Long appId,
+                                               String userMessage, CodeGenTypeEnum codeGenTypeEnum) {
         return switch (codeGenTypeEnum) {
-            case HTML -> {
-                Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStreaming(userMessage);
-                yield processCodeStreaming(result, codeGenTypeEnum,appId);
-            }
-            case MULTI_FILE -> {
-                Flux<String> result = aiCodeGeneratorService.generateMultiFileCodeStreaming(userMessage);
-                yield processCodeStreaming(result, codeGenTypeEnum,appId);
-            }
+            case HTML -> TokenStreamFlux.from(() -> aiCodeGeneratorService.generateHtmlCodeStreaming(appId, userMessage));
+            case MULTI_FILE -> multiFileGenerationConfig.isParallel()
+                    ? parallelMultiFileCodeGenerator.generate(aiCodeGeneratorService, appId, userMessage)
+                    : TokenStreamFlux.from(() -> aiCodeGeneratorService.generateMultiFileCodeStreaming(appId, userMessage));
             default -> {
                 String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, errorMessage);
@@ -103,6 +213,53 @@ public class AiCodeGeneratorFacade {
         };
     }
 
+    /**
+     * 修改模式：模型只输出查找替换补丁，流结束后在收尾线程池中应用到已保存的文件；
+     * 补丁无法应用时不修改任何文件，接着完整生成一次：失败的一轮从对话记忆中移除，输出缓冲区清空，
+     * 对话历史只记录完整生成的结果，提示语只发送给客户端
+     */
+    private Flux<String> editCodeStreaming(AiCodeGeneratorService aiCodeGeneratorService, String userMessage,
+                                           String appFiles, PatchCodeFileSaver patchSaver,
+                                           CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                           GenerationChunkBuffer chunkBuffer, GenerationListener listener) {
+        AtomicBoolean applied = new AtomicBoolean();
+        Flux<String> patches = TokenStreamFlux.from(() -> aiCodeGeneratorService.editCodeStreaming(appId, appFiles, userMessage))
+                .doOnNext(chunkBuffer::append);
+        Mono<Void> applyPatches = generationCompletionStage.run("applyPatch", () -> {
+            try {
+                patchSaver.apply(CodePatchParser.parse(chunkBuffer.toString()));
+                applied.set(true);
+                chunkBuffer.markComplete();
+                log.info("补丁应用成功：{}，变化的文件：{}", patchSaver.getDirPath(), patchSaver.getChangedFiles());
+                listener.onFilesSaved(patchSaver.getChangedFiles());
+            } catch (Exception e) {
+                log.warn("补丁无法应用，改为完整生成：{}", e.getMessage());
+            }
+        });
+        Flux<String> fallback = Flux.defer(() -> {
+            if (applied.get()) {
+                return Flux.empty();
+            }
+            discardEditTurn(aiCodeGeneratorService, appId);
+            chunkBuffer.reset();
+            return Flux.just(EDIT_FALLBACK_NOTICE).concatWith(processCodeStreaming(
+                    generateCodeStreaming(aiCodeGeneratorService, appId, userMessage, codeGenTypeEnum),
+                    codeGenTypeEnum, appId, chunkBuffer, listener));
+        });
+        return patches.concatWith(applyPatches.thenMany(fallback));
+    }
+
+    /**
+     * 从对话记忆中移除补丁无法应用的一轮（携带当前文件的用户消息与补丁回复）
+     */
+    private void discardEditTurn(AiCodeGeneratorService aiCodeGeneratorService, Long appId) {
+        ChatMemory chatMemory = aiCodeGeneratorService.getChatMemory(appId);
+        if (!(chatMemory instanceof TokenBudgetChatMemory tokenBudgetChatMemory)
+                || !tokenBudgetChatMemory.removeLastExchange()) {
+            log.warn("对话记忆已变化，未移除无法应用的修改，appId：{}", appId);
+        }
+    }
+
     /**
      * 生成 HTML 模式的代码并保存
      * 该方法通过调用AI代码生成服务生成HTML代码，然后使用文件保存工具将结果保存到本地，用于指导AI生成相应的HTML代码
@@ -111,7 +268,7 @@ public class AiCodeGeneratorFacade {
      */
     private File generateAndSaveHtmlCode(String userMessage,Long appId) {
         AiCodeGeneratorService aiCodeGeneratorService=aiCodeGeneratorServiceFactory.getOrCreateAiCodeGeneratorService(appId);
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(userMessage);
+        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
         return CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML,appId);
     }
 
@@ -123,7 +280,7 @@ public class AiCodeGeneratorFacade {
      */
     private File generateAndSaveMultiFileCode(String userMessage,Long appId) {
         AiCodeGeneratorService aiCodeGeneratorService=aiCodeGeneratorServiceFactory.getOrCreateAiCodeGeneratorService(appId);
-        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
         return CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE,appId);
     }
 
@@ -136,7 +293,7 @@ public class AiCodeGeneratorFacade {
     @Deprecated
     private Flux<String> generateAndSaveHtmlCodeStreaming(String userMessage,Long appId) {
         AiCodeGeneratorService aiCodeGeneratorService=aiCodeGeneratorServiceFactory.getOrCreateAiCodeGeneratorService(appId);
-        Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStreaming(userMessage);
+        Flux<String> result = TokenStreamFlux.from(() -> aiCodeGeneratorService.generateHtmlCodeStreaming(appId, userMessage));
         StringBuilder codeBuilder = new StringBuilder();
         return result
                 .doOnNext(codeBuilder::append)
@@ -160,7 +317,7 @@ public class AiCodeGeneratorFacade {
     @Deprecated
     private Flux<String> generateAndSaveMultiFileCodeStreaming(String userMessage,Long appId) {
         AiCodeGeneratorService aiCodeGeneratorService=aiCodeGeneratorServiceFactory.getOrCreateAiCodeGeneratorService(appId);
-        Flux<String> result = aiCodeGeneratorService.generateMultiFileCodeStreaming(userMessage);
+        Flux<String> result = TokenStreamFlux.from(() -> aiCodeGeneratorService.generateMultiFileCodeStreaming(appId, userMessage));
         StringBuilder codeBuilder = new StringBuilder();
         return result
                 .doOnNext(codeBuilder::append)
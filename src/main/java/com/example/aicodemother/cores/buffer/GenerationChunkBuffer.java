@@ -0,0 +1,108 @@
+package com.example.aicodemother.cores.buffer;
+
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单次生成的输出缓冲区
+ * 按原始 token 字符串分段保存（不做拼接复制），代码解析保存与对话历史入库共用同一份内容，
+ * 只在需要完整文本时拼接一次。超过最大长度时抛出异常终止生成。
+ */
+public class GenerationChunkBuffer {
+
+    private final List<String> chunks = new ArrayList<>();
+
+    /**
+     * 最大字符数
+     */
+    private final int maxChars;
+
+    private int length;
+
+    /**
+     * 模型输出是否已完整结束
+     */
+    private volatile boolean complete;
+
+    public GenerationChunkBuffer(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 追加一段输出
+     *
+     * @param chunk 流式输出的片段
+     */
+    public synchronized void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (length + chunk.length() > maxChars) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "生成内容超出长度上限：" + maxChars);
+        }
+        chunks.add(chunk);
+        length += chunk.length();
+    }
+
+    /**
+     * 丢弃已缓冲的输出，重新开始一次生成（如补丁无法应用后改为完整生成）
+     */
+    public synchronized void reset() {
+        chunks.clear();
+        length = 0;
+        complete = false;
+    }
+
+    /**
+     * 标记模型输出已完整结束
+     */
+    public void markComplete() {
+        complete = true;
+    }
+
+    /**
+     * @return 模型输出是否已完整结束，未结束时被取消说明是中途放弃
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return 已缓冲的字符数
+     */
+    public synchronized int length() {
+        return length;
+    }
+
+    /**
+     * @return 已缓冲的片段数
+     */
+    public synchronized int chunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * 获取指定序号的片段
+     *
+     * @param index 片段序号，从 0 开始
+     * @return 原始片段
+     */
+    public synchronized String chunkAt(int index) {
+        return chunks.get(index);
+    }
+
+    /**
+     * 拼接完整输出
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(length);
+        for (String chunk : chunks) {
+            builder.append(chunk);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.aicodemother.cores.completion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成收尾阶段
+ * 将流结束后的阻塞操作（文件解析保存、对话历史入库）切换到有界线程池执行，
+ * 避免占用发出最后一个 token 的 HTTP 客户端事件循环线程，并暴露队列长度、排队耗时与执行耗时指标
+ */
+@Slf4j
+@Component
+public class GenerationCompletionStage {
+
+    private static final String METRIC_PREFIX = "ai.generation.completion";
+
+    @Resource
+    private ThreadPoolExecutor generationCompletionExecutor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder(METRIC_PREFIX + ".queue.size", generationCompletionExecutor, executor -> executor.getQueue().size())
+                .description("等待执行的收尾任务数")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".active", generationCompletionExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("正在执行的收尾任务数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("队列已满被拒绝的收尾任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在收尾线程池中执行任务，订阅时入队
+     * 任务一旦入队就会执行完毕，下游取消（如客户端断开）不会中断保存
+     *
+     * @param taskName 任务名称，用作指标标签
+     * @param task     阻塞任务
+     * @return 任务完成信号
+     */
+    public Mono<Void> run(String taskName, Runnable task) {
+        return Mono.defer(() -> {
+            long submittedAt = System.nanoTime();
+            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+                long startedAt = System.nanoTime();
+                timer("wait", taskName).record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    timer("duration", taskName).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            }, generationCompletionExecutor);
+            return Mono.fromFuture(future, true);
+        }).doOnError(RejectedExecutionException.class, e -> {
+            rejectedCounter.increment();
+            log.error("收尾任务被拒绝，task：{}", taskName);
+        });
+    }
+
+    /**
+     * 提交任务后立即返回，不等待执行结果
+     *
+     * @param taskName 任务名称
+     * @param task     阻塞任务
+     */
+    public void submit(String taskName, Runnable task) {
+        run(taskName, task).subscribe(null, e -> log.error("收尾任务执行失败，task：{}", taskName, e));
+    }
+
+    private Timer timer(String type, String taskName) {
+        return Timer.builder(METRIC_PREFIX + "." + type)
+                .tag("task", taskName)
+                .register(meterRegistry);
+    }
+}
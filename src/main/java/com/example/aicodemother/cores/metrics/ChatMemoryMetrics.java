@@ -0,0 +1,73 @@
+package com.example.aicodemother.cores.metrics;
+
+import com.example.aicodemother.ai.memory.TokenBudgetChatMemory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对话记忆指标
+ * 记录按 token 预算淘汰的消息数与估算 token 数，以及创建记忆时对话历史的来源
+ */
+@Slf4j
+@Component
+public class ChatMemoryMetrics implements TokenBudgetChatMemory.TrimListener {
+
+    private static final String METRIC_PREFIX = "ai.memory";
+
+    /**
+     * 对话历史来源：Redis 中仍有记忆
+     */
+    public static final String SOURCE_REDIS = "redis";
+
+    /**
+     * 对话历史来源：Redis 中没有记忆，从数据库加载
+     */
+    public static final String SOURCE_MYSQL = "mysql";
+
+    /**
+     * 对话历史来源：两处都没有对话历史
+     */
+    public static final String SOURCE_EMPTY = "empty";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter trimmedMessages;
+
+    private Counter trimmedTokens;
+
+    @PostConstruct
+    public void init() {
+        trimmedMessages = Counter.builder(METRIC_PREFIX + ".trimmed.messages")
+                .description("超出 token 预算而淘汰的记忆消息数")
+                .register(meterRegistry);
+        trimmedTokens = Counter.builder(METRIC_PREFIX + ".trimmed.tokens")
+                .description("超出 token 预算而淘汰的记忆 token 数（估算）")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onTrim(Object memoryId, int messages, int tokens, int retainedTokens) {
+        trimmedMessages.increment(messages);
+        trimmedTokens.increment(tokens);
+        log.debug("对话记忆超出 token 预算，memoryId：{}，淘汰 {} 条消息、约 {} token，保留约 {} token",
+                memoryId, messages, tokens, retainedTokens);
+    }
+
+    /**
+     * 记录一次记忆创建时对话历史的来源
+     *
+     * @param source {@link #SOURCE_REDIS}、{@link #SOURCE_MYSQL} 或 {@link #SOURCE_EMPTY}
+     */
+    public void recordHydration(String source) {
+        Counter.builder(METRIC_PREFIX + ".hydration")
+                .description("创建对话记忆时对话历史的来源")
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+    }
+}
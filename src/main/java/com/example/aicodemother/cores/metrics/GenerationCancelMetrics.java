@@ -0,0 +1,66 @@
+package com.example.aicodemother.cores.metrics;
+
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成取消指标
+ * 模型流式输出每个分片约为一个 token，按生成类型记录完整生成的平均分片数（指数加权平均），
+ * 客户端中途断开时用平均值减去已生成的分片数，估算取消模型调用节省的 token 数
+ */
+@Component
+public class GenerationCancelMetrics {
+
+    private static final String METRIC_PREFIX = "ai.generation.cancelled";
+
+    /**
+     * 指数加权平均的新样本权重
+     */
+    private static final double ALPHA = 0.1;
+
+    private final Map<CodeGenTypeEnum, Double> averageTokens = new ConcurrentHashMap<>();
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 记录一次完整生成
+     *
+     * @param codeGenType 生成类型
+     * @param tokens      生成的分片数
+     */
+    public void recordCompleted(CodeGenTypeEnum codeGenType, int tokens) {
+        averageTokens.merge(codeGenType, (double) tokens, (average, sample) -> average + ALPHA * (sample - average));
+    }
+
+    /**
+     * 记录一次中途取消
+     *
+     * @param codeGenType 生成类型
+     * @param tokens      取消前已生成的分片数
+     */
+    public void recordCancelled(CodeGenTypeEnum codeGenType, int tokens) {
+        String type = codeGenType.getValue();
+        Counter.builder(METRIC_PREFIX)
+                .description("客户端断开而取消的生成数")
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment();
+        Counter.builder(METRIC_PREFIX + ".tokens.generated")
+                .description("取消前已生成的 token 数")
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(tokens);
+        Counter.builder(METRIC_PREFIX + ".tokens.saved")
+                .description("取消模型调用估算节省的 token 数")
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(Math.max(0D, averageTokens.getOrDefault(codeGenType, 0D) - tokens));
+    }
+}
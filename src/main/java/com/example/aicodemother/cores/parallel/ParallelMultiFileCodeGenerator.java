@@ -0,0 +1,92 @@
+package com.example.aicodemother.cores.parallel;
+
+import com.example.aicodemother.ai.AiCodeGeneratorService;
+import com.example.aicodemother.ai.MultiFilePartGeneratorService;
+import com.example.aicodemother.ai.TokenStreamFlux;
+import com.example.aicodemother.ai.memory.CodeMessageCompactor;
+import com.example.aicodemother.ai.memory.TokenBudgetChatMemory;
+import com.example.aicodemother.constant.AppConstant;
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.memory.ChatMemory;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+
+/**
+ * 多文件并行生成
+ * 先生成一份结构规划（区块、共享的 id/class、视觉风格、交互），再根据规划同时生成 index.html、style.css、script.js。
+ * 三个文件的输出按文件顺序依次输出（后面的文件在前面的文件输出期间先缓冲），
+ * 拼接结果与单次生成的格式一致，可直接交给多文件解析与保存；总耗时约为规划加上最长的一个文件。
+ * 对话记忆中规划调用记下的只是规划，三个文件全部生成后替换为完整输出，与单次生成一样参与旧版本代码的压缩。
+ * 文件调用不使用对话记忆，应用已有代码时把已保存的文件一并传入，后续修改在现有代码基础上进行而不是按规划重写。
+ * 一次并行生成只占用一个生成调度名额，但会发起四次模型调用（规划一次，之后三个文件同时调用），开启时需相应调整全局并发数。
+ */
+@Slf4j
+@Component
+public class ParallelMultiFileCodeGenerator {
+
+    @Resource
+    private MultiFilePartGeneratorService multiFilePartGeneratorService;
+
+    /**
+     * @param aiCodeGeneratorService AI 服务，用户消息与完整输出记入应用的对话记忆
+     * @param appId                  应用 ID
+     * @param userMessage            用户提示词
+     * @return 规划与三个代码块依次拼接的输出
+     */
+    public Flux<String> generate(AiCodeGeneratorService aiCodeGeneratorService, Long appId, String userMessage) {
+        StringBuilder plan = new StringBuilder();
+        StringBuilder output = new StringBuilder();
+        Flux<String> planFlux = TokenStreamFlux.from(() -> aiCodeGeneratorService.generateMultiFilePlanStreaming(appId, userMessage))
+                .doOnNext(plan::append);
+        return planFlux.concatWith(Flux.defer(() -> {
+            String planText = plan.toString();
+            String currentFiles = renderCurrentFiles(appId);
+            log.info("结构规划完成，开始并行生成文件，规划长度：{}，已有文件长度：{}", planText.length(), currentFiles.length());
+            Flux<String> html = TokenStreamFlux.from(() ->
+                    multiFilePartGeneratorService.generateHtmlStreaming(userMessage, planText, currentFiles));
+            Flux<String> css = TokenStreamFlux.from(() ->
+                    multiFilePartGeneratorService.generateCssStreaming(userMessage, planText, currentFiles));
+            Flux<String> js = TokenStreamFlux.from(() ->
+                    multiFilePartGeneratorService.generateJsStreaming(userMessage, planText, currentFiles));
+            // 三个文件同时订阅，任一失败或下游取消时其余调用一并取消
+            return Flux.concat(Flux.just("\n\n"), Flux.mergeSequential(
+                            withSeparator(html), withSeparator(css), withSeparator(js)))
+                    .doOnNext(output::append)
+                    .doOnComplete(() -> rememberOutput(aiCodeGeneratorService, appId, planText, planText + output));
+        }));
+    }
+
+    /**
+     * 读取应用已保存的文件，作为文件调用的修改基础
+     *
+     * @return 附加到文件调用提示词末尾的内容，应用尚未生成代码时返回空串
+     */
+    private String renderCurrentFiles(Long appId) {
+        Path appDir = Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR, CodeGenTypeEnum.MULTI_FILE.getValue() + "_" + appId);
+        String appFiles = CodeMessageCompactor.renderAppFiles(appDir);
+        if (appFiles == null) {
+            return "";
+        }
+        return "\n\n" + appFiles + "\n\n请在以上文件的基础上按网站描述和结构规划修改，未涉及的内容保持不变，输出修改后的完整文件。";
+    }
+
+    /**
+     * 用完整输出替换对话记忆中的规划
+     */
+    private void rememberOutput(AiCodeGeneratorService aiCodeGeneratorService, Long appId, String planText, String fullText) {
+        ChatMemory chatMemory = aiCodeGeneratorService.getChatMemory(appId);
+        if (!(chatMemory instanceof TokenBudgetChatMemory tokenBudgetChatMemory)
+                || !tokenBudgetChatMemory.replaceLastAiMessage(planText, AiMessage.from(fullText.trim()))) {
+            log.warn("对话记忆已变化，未记录并行生成的完整输出，appId：{}", appId);
+        }
+    }
+
+    private static Flux<String> withSeparator(Flux<String> file) {
+        return file.concatWith(Flux.just("\n\n"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.aicodemother.cores.parser;
+
+import com.example.aicodemother.ai.model.HtmlCodeResult;
+import com.example.aicodemother.ai.model.MultiFileCodeResult;
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 收集流式解析出的代码文件，流结束后组装为与 {@link CodeParserExecutor} 相同的解析结果
+ */
+public class CodeFileCollector implements CodeFileListener {
+
+    private final Map<String, StringBuilder> files = new HashMap<>();
+
+    /**
+     * 首个代码块出现之前的普通文本，仅用于单文件模式下没有代码块时的兜底
+     */
+    private StringBuilder plainText = new StringBuilder();
+
+    @Override
+    public void onFileStart(String fileName) {
+        files.put(fileName, new StringBuilder());
+        plainText = null;
+    }
+
+    @Override
+    public void onFileContent(String fileName, CharSequence content) {
+        files.get(fileName).append(content);
+    }
+
+    @Override
+    public void onFileEnd(String fileName) {
+    }
+
+    @Override
+    public void onPlainText(CharSequence text) {
+        if (plainText != null) {
+            plainText.append(text);
+        }
+    }
+
+    /**
+     * 组装解析结果
+     *
+     * @param codeGenType 生成类型
+     * @return HtmlCodeResult 或 MultiFileCodeResult
+     */
+    public Object toResult(CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> {
+                HtmlCodeResult result = new HtmlCodeResult();
+                String htmlCode = getFile("index.html");
+                // 如果没有找到代码块，将整个内容作为HTML
+                result.setHtmlCode(htmlCode != null ? htmlCode : plainText == null ? "" : plainText.toString().trim());
+                yield result;
+            }
+            case MULTI_FILE -> {
+                MultiFileCodeResult result = new MultiFileCodeResult();
+                result.setHtmlCode(getFile("index.html"));
+                result.setCssCode(getFile("style.css"));
+                result.setJsCode(getFile("script.js"));
+                yield result;
+            }
+            default -> throw new IllegalArgumentException("不支持的类型: " + codeGenType);
+        };
+    }
+
+    private String getFile(String fileName) {
+        StringBuilder content = files.get(fileName);
+        if (content == null || content.isEmpty()) {
+            return null;
+        }
+        return content.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.aicodemother.cores.parser;
+
+/**
+ * 流式代码文件事件监听器
+ * 由 {@link StreamingCodeParser} 在识别到代码块的开始、内容和结束时回调，
+ * 回调中的 CharSequence 会被解析器复用，需要保留时请自行复制
+ */
+public interface CodeFileListener {
+
+    /**
+     * 代码块开始
+     *
+     * @param fileName 代码块对应的文件名，如 index.html
+     */
+    void onFileStart(String fileName);
+
+    /**
+     * 代码块内容（已去除首尾空白），同一文件可能回调多次
+     *
+     * @param fileName 文件名
+     * @param content  本次新增的内容
+     */
+    void onFileContent(String fileName, CharSequence content);
+
+    /**
+     * 代码块结束
+     *
+     * @param fileName 文件名
+     */
+    void onFileEnd(String fileName);
+
+    /**
+     * 代码块之外的普通文本，默认忽略
+     *
+     * @param text 普通文本
+     */
+    default void onPlainText(CharSequence text) {
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.aicodemother.cores.parser;
+
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流式代码块解析器
+ * 随 token 增量喂入 AI 输出，边接收边识别 ```html / ```css / ```js 代码块并按文件回调事件，
+ * 解析开销分摊到整个流上，流结束时不再需要对完整输出做正则匹配。
+ * 与 {@link HtmlCodeParser}、{@link MultiFileCodeParser} 保持一致：同类代码块只取第一个，内容去除首尾空白。
+ * 非线程安全，一次生成对应一个实例。
+ */
+public class StreamingCodeParser {
+
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 代码块语言标识最大长度，超过则不视为代码块开头
+     */
+    private static final int MAX_INFO_LENGTH = 32;
+
+    private static final Map<String, String> HTML_FILES = Map.of("html", "index.html");
+
+    private static final Map<String, String> MULTI_FILES = Map.of(
+            "html", "index.html",
+            "css", "style.css",
+            "js", "script.js",
+            "javascript", "script.js");
+
+    private enum State {
+        /**
+         * 代码块之外
+         */
+        TEXT,
+        /**
+         * 读取代码块语言标识
+         */
+        INFO,
+        /**
+         * 需要输出的代码块内容
+         */
+        CODE,
+        /**
+         * 无需输出的代码块内容
+         */
+        SKIP
+    }
+
+    private final Map<String, String> fileNames;
+
+    private final CodeFileListener listener;
+
+    private final Set<String> emittedFiles = new HashSet<>();
+
+    private final StringBuilder info = new StringBuilder();
+
+    /**
+     * 代码块内暂缓输出的空白，用于去除结尾空白
+     */
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+
+    /**
+     * 本次喂入的代码块内容
+     */
+    private final StringBuilder codeSegment = new StringBuilder();
+
+    /**
+     * 本次喂入的普通文本
+     */
+    private final StringBuilder plainSegment = new StringBuilder();
+
+    private State state = State.TEXT;
+
+    private String currentFile;
+
+    /**
+     * 连续反引号个数
+     */
+    private int backticks;
+
+    /**
+     * 当前代码块是否还未出现非空白字符
+     */
+    private boolean leading;
+
+    public StreamingCodeParser(CodeGenTypeEnum codeGenType, CodeFileListener listener) {
+        this.fileNames = switch (codeGenType) {
+            case HTML -> HTML_FILES;
+            case MULTI_FILE -> MULTI_FILES;
+            default -> throw new IllegalArgumentException("不支持的类型: " + codeGenType);
+        };
+        this.listener = listener;
+    }
+
+    /**
+     * 喂入一段 AI 输出
+     *
+     * @param chunk 流式输出的片段
+     */
+    public void feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> onText(c);
+                case INFO -> onInfo(c);
+                case CODE -> onCode(c);
+                case SKIP -> onSkip(c);
+            }
+        }
+        flushSegments();
+    }
+
+    /**
+     * 输出结束，未闭合的代码块按已接收内容结束
+     */
+    public void finish() {
+        if (state == State.CODE) {
+            // 未闭合时反引号属于代码内容
+            for (int i = 0; i < backticks; i++) {
+                appendCode('`');
+            }
+            closeFile();
+        }
+        flushSegments();
+        state = State.TEXT;
+        backticks = 0;
+    }
+
+    private void onText(char c) {
+        plainSegment.append(c);
+        if (c == '`') {
+            if (++backticks == FENCE_LENGTH) {
+                backticks = 0;
+                info.setLength(0);
+                state = State.INFO;
+            }
+            return;
+        }
+        backticks = 0;
+    }
+
+    private void onInfo(char c) {
+        plainSegment.append(c);
+        if (c != '\n') {
+            info.append(c);
+            if (info.length() > MAX_INFO_LENGTH) {
+                state = State.TEXT;
+            }
+            return;
+        }
+        String fileName = fileNames.get(info.toString().trim().toLowerCase());
+        if (fileName == null || !emittedFiles.add(fileName)) {
+            state = State.SKIP;
+            return;
+        }
+        currentFile = fileName;
+        leading = true;
+        pendingWhitespace.setLength(0);
+        state = State.CODE;
+        flushSegments();
+        listener.onFileStart(fileName);
+    }
+
+    private void onCode(char c) {
+        if (c == '`') {
+            if (++backticks == FENCE_LENGTH) {
+                backticks = 0;
+                closeFile();
+                state = State.TEXT;
+            }
+            return;
+        }
+        for (; backticks > 0; backticks--) {
+            appendCode('`');
+        }
+        appendCode(c);
+    }
+
+    private void onSkip(char c) {
+        plainSegment.append(c);
+        if (c == '`') {
+            if (++backticks == FENCE_LENGTH) {
+                backticks = 0;
+                state = State.TEXT;
+            }
+            return;
+        }
+        backticks = 0;
+    }
+
+    private void appendCode(char c) {
+        if (Character.isWhitespace(c)) {
+            // 开头空白直接丢弃，其余空白等到出现非空白字符时再输出
+            if (!leading) {
+                pendingWhitespace.append(c);
+            }
+            return;
+        }
+        leading = false;
+        if (!pendingWhitespace.isEmpty()) {
+            codeSegment.append(pendingWhitespace);
+            pendingWhitespace.setLength(0);
+        }
+        codeSegment.append(c);
+    }
+
+    private void closeFile() {
+        flushSegments();
+        pendingWhitespace.setLength(0);
+        String fileName = currentFile;
+        currentFile = null;
+        listener.onFileEnd(fileName);
+    }
+
+    private void flushSegments() {
+        if (!plainSegment.isEmpty()) {
+            listener.onPlainText(plainSegment);
+            plainSegment.setLength(0);
+        }
+        if (!codeSegment.isEmpty()) {
+            listener.onFileContent(currentFile, codeSegment);
+            codeSegment.setLength(0);
+        }
+    }
+}
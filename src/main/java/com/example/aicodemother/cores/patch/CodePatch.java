@@ -0,0 +1,27 @@
+package com.example.aicodemother.cores.patch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 单个查找替换补丁
+ */
+@Data
+@AllArgsConstructor
+public class CodePatch {
+
+    /**
+     * 目标文件名
+     */
+    private String fileName;
+
+    /**
+     * 需要被替换的原始代码
+     */
+    private String search;
+
+    /**
+     * 替换后的代码
+     */
+    private String replace;
+}
@@ -0,0 +1,84 @@
+package com.example.aicodemother.cores.patch;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 查找替换补丁解析器
+ * 解析模型输出中的查找替换块，块外的说明文字忽略：
+ * <pre>
+ * FILE: index.html
+ * &lt;&lt;&lt;&lt;&lt;&lt;&lt; SEARCH
+ * 原始代码
+ * =======
+ * 替换后的代码
+ * &gt;&gt;&gt;&gt;&gt;&gt;&gt; REPLACE
+ * </pre>
+ * 同一文件的连续多个块只需在第一个块前写文件名
+ */
+public class CodePatchParser {
+
+    private static final String FILE_PREFIX = "FILE:";
+
+    private static final String SEARCH_MARKER = "<<<<<<< SEARCH";
+
+    private static final String DIVIDER = "=======";
+
+    private static final String REPLACE_MARKER = ">>>>>>> REPLACE";
+
+    private CodePatchParser() {
+    }
+
+    /**
+     * @param content 模型输出
+     * @return 补丁列表，输出中没有查找替换块时为空
+     * @throws BusinessException 查找替换块不完整或缺少文件名
+     */
+    public static List<CodePatch> parse(String content) {
+        List<CodePatch> patches = new ArrayList<>();
+        String[] lines = content.split("\r?\n", -1);
+        String fileName = null;
+        int i = 0;
+        while (i < lines.length) {
+            String line = lines[i].trim();
+            if (line.startsWith(FILE_PREFIX)) {
+                fileName = StrUtil.strip(line.substring(FILE_PREFIX.length()).trim(), "`");
+                i++;
+                continue;
+            }
+            if (!line.equals(SEARCH_MARKER)) {
+                i++;
+                continue;
+            }
+            if (StrUtil.isBlank(fileName)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁缺少文件名");
+            }
+            int divider = indexOf(lines, DIVIDER, i + 1);
+            int end = divider < 0 ? -1 : indexOf(lines, REPLACE_MARKER, divider + 1);
+            if (end < 0) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁格式不完整");
+            }
+            patches.add(new CodePatch(fileName, join(lines, i + 1, divider), join(lines, divider + 1, end)));
+            i = end + 1;
+        }
+        return patches;
+    }
+
+    private static int indexOf(String[] lines, String marker, int from) {
+        for (int i = from; i < lines.length; i++) {
+            if (lines[i].trim().equals(marker)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String join(String[] lines, int from, int to) {
+        return String.join("\n", Arrays.asList(lines).subList(from, to));
+    }
+}
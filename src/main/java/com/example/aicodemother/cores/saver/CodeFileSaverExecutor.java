@@ -18,4 +18,18 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.PARAMS_ERROR,"不存在类型");
         };
     }
+
+    public static StreamingCodeFileSaver createStreamingSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML, MULTI_FILE -> new StreamingCodeFileSaver(codeGenType, appId);
+            default -> throw new BusinessException(ErrorCode.PARAMS_ERROR,"不存在类型");
+        };
+    }
+
+    public static PatchCodeFileSaver createPatchSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML, MULTI_FILE -> new PatchCodeFileSaver(codeGenType, appId);
+            default -> throw new BusinessException(ErrorCode.PARAMS_ERROR,"不存在类型");
+        };
+    }
 }
@@ -4,12 +4,18 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.example.aicodemother.constant.AppConstant;
+import com.example.aicodemother.cores.store.CodeFileStore;
+import com.example.aicodemother.cores.store.CodeVersionStore;
 import com.example.aicodemother.exception.BusinessException;
 import com.example.aicodemother.exception.ErrorCode;
 import com.example.aicodemother.model.enums.CodeGenTypeEnum;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
 
 public abstract class CodeFileSaverTemplate<T> {
 
@@ -28,6 +34,9 @@ public abstract class CodeFileSaverTemplate<T> {
         String dirPath = buildUniqueDir(appId);
         //2.保存文件
         saveFile(result, dirPath);
+        //3.登记到内容寻址存储并记录版本
+        Map<String, String> manifest = CodeFileStore.getInstance().commit(Path.of(dirPath));
+        CodeVersionStore.getInstance().record(Path.of(dirPath), manifest);
         return new File(dirPath);
     }
 
@@ -39,15 +48,37 @@ public abstract class CodeFileSaverTemplate<T> {
     }
 
     private String buildUniqueDir(Long appId) {
-        String bizType = getCodeType().getValue();
+        return buildDir(getCodeType(), appId);
+    }
+
+    /**
+     * 构建应用目录：code_output/bizType_appId
+     */
+    static String buildDir(CodeGenTypeEnum codeGenType, Long appId) {
+        String bizType = codeGenType.getValue();
         String uniqueDirName = StrUtil.format("{}_{}", bizType, appId);
         String dirPath = FILE_SAVE_ROOT_DIR + File.separator + uniqueDirName;
         FileUtil.mkdir(dirPath);
         return dirPath;
     }
+    /**
+     * 写入临时文件后原子重命名，目录中的旧文件是存储对象的硬链接，不能原地覆盖；
+     * 内容与上次保存的相同时不写入
+     */
     protected static void writeToFile(String dirPath, String filename, String content) {
-        String filePath = dirPath + File.separator + filename;
-        FileUtil.writeString(content, filePath, StandardCharsets.UTF_8);
+        String previousHash = CodeFileStore.getInstance().getManifest(Path.of(dirPath)).get(filename);
+        if (CodeFileStore.hash(content).equals(previousHash)) {
+            return;
+        }
+        Path tempFile = Path.of(dirPath, StrUtil.format(".{}.{}.tmp", filename, IdUtil.getSnowflakeNextIdStr()));
+        try {
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            CodeFileStore.replaceFile(tempFile, Path.of(dirPath, filename));
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入文件失败：" + e.getMessage());
+        } finally {
+            StreamingCodeFileSaver.deleteQuietly(tempFile);
+        }
     }
 
     protected abstract CodeGenTypeEnum getCodeType();
@@ -0,0 +1,162 @@
+package com.example.aicodemother.cores.saver;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.example.aicodemother.cores.patch.CodePatch;
+import com.example.aicodemother.cores.store.CodeFileStore;
+import com.example.aicodemother.cores.store.CodeVersionStore;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 补丁文件保存器
+ * 将查找替换补丁应用到应用目录下已保存的文件：所有补丁先在内存中应用，全部成功后才写入文件，
+ * 任一补丁无法应用时不修改任何文件，由调用方改为完整生成。一次修改对应一个实例。
+ */
+public class PatchCodeFileSaver {
+
+    private static final Set<String> HTML_FILES = Set.of("index.html");
+
+    private static final Set<String> MULTI_FILE_FILES = Set.of("index.html", "style.css", "script.js");
+
+    private final Set<String> allowedFiles;
+
+    @Getter
+    private final Path dirPath;
+
+    /**
+     * 本次修改内容变化的文件，应用补丁后可用
+     */
+    @Getter
+    private List<String> changedFiles = List.of();
+
+    public PatchCodeFileSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        this.allowedFiles = codeGenType == CodeGenTypeEnum.HTML ? HTML_FILES : MULTI_FILE_FILES;
+        this.dirPath = Path.of(CodeFileSaverTemplate.buildDir(codeGenType, appId));
+    }
+
+    /**
+     * 应用补丁
+     *
+     * @param patches 补丁列表
+     * @throws BusinessException 没有补丁或任一补丁无法应用，此时不修改任何文件
+     */
+    public void apply(List<CodePatch> patches) {
+        if (patches.isEmpty()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "没有可应用的补丁");
+        }
+        Map<String, String> contents = new LinkedHashMap<>();
+        for (CodePatch patch : patches) {
+            String fileName = patch.getFileName();
+            if (!allowedFiles.contains(fileName)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁目标文件无效：" + fileName);
+            }
+            String content = contents.containsKey(fileName) ? contents.get(fileName) : read(fileName);
+            contents.put(fileName, applyPatch(content, patch));
+        }
+        publish(contents);
+    }
+
+    private String read(String fileName) {
+        Path file = dirPath.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁目标文件不存在：" + fileName);
+        }
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8).replace("\r\n", "\n");
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 先按原文精确匹配，匹配不到时忽略每行首尾空白按行匹配；匹配结果必须唯一
+     */
+    static String applyPatch(String content, CodePatch patch) {
+        String search = patch.getSearch();
+        if (StrUtil.isBlank(search)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁查找内容为空：" + patch.getFileName());
+        }
+        int index = content.indexOf(search);
+        if (index >= 0) {
+            if (content.indexOf(search, index + 1) >= 0) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁查找内容不唯一：" + patch.getFileName());
+            }
+            return content.substring(0, index) + patch.getReplace() + content.substring(index + search.length());
+        }
+        return applyPatchIgnoringIndent(content, patch);
+    }
+
+    private static String applyPatchIgnoringIndent(String content, CodePatch patch) {
+        List<String> lines = Arrays.asList(content.split("\n", -1));
+        List<String> searchLines = Arrays.stream(patch.getSearch().split("\n", -1)).map(String::strip).toList();
+        int match = -1;
+        for (int start = 0; start + searchLines.size() <= lines.size(); start++) {
+            if (matchesAt(lines, searchLines, start)) {
+                if (match >= 0) {
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁查找内容不唯一：" + patch.getFileName());
+                }
+                match = start;
+            }
+        }
+        if (match < 0) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "补丁查找内容不存在：" + patch.getFileName());
+        }
+        List<String> result = new ArrayList<>(lines.subList(0, match));
+        result.add(patch.getReplace());
+        result.addAll(lines.subList(match + searchLines.size(), lines.size()));
+        return String.join("\n", result);
+    }
+
+    private static boolean matchesAt(List<String> lines, List<String> searchLines, int start) {
+        for (int i = 0; i < searchLines.size(); i++) {
+            if (!lines.get(start + i).strip().equals(searchLines.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 内容有变化的文件先写入临时文件，再逐个原子重命名
+     */
+    private void publish(Map<String, String> contents) {
+        CodeFileStore codeFileStore = CodeFileStore.getInstance();
+        Map<String, String> previousManifest = codeFileStore.getManifest(dirPath);
+        Map<String, Path> tempFiles = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> entry : contents.entrySet()) {
+                if (CodeFileStore.hash(entry.getValue()).equals(previousManifest.get(entry.getKey()))) {
+                    continue;
+                }
+                Path tempFile = dirPath.resolve(StrUtil.format(".{}.{}.tmp", entry.getKey(), IdUtil.getSnowflakeNextIdStr()));
+                tempFiles.put(entry.getKey(), tempFile);
+                Files.writeString(tempFile, entry.getValue(), StandardCharsets.UTF_8);
+            }
+            for (Map.Entry<String, Path> entry : tempFiles.entrySet()) {
+                CodeFileStore.replaceFile(entry.getValue(), dirPath.resolve(entry.getKey()));
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入文件失败：" + e.getMessage());
+        } finally {
+            // 已发布的临时文件不存在，只会清理发布失败时剩下的
+            tempFiles.values().forEach(StreamingCodeFileSaver::deleteQuietly);
+        }
+        Map<String, String> manifest = codeFileStore.commit(dirPath);
+        changedFiles = CodeFileStore.changedFiles(previousManifest, manifest);
+        CodeVersionStore.getInstance().record(dirPath, manifest);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.aicodemother.cores.saver;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.example.aicodemother.cores.parser.CodeFileListener;
+import com.example.aicodemother.cores.store.CodeFileStore;
+import com.example.aicodemother.cores.store.CodeVersionStore;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式文件保存器
+ * 代码块内容边接收边写入应用目录下的临时文件，流正常结束时再将所有已闭合的临时文件原子重命名为正式文件，
+ * 单次生成占用的堆内存与输出长度无关；流被取消或出错时丢弃全部临时文件，不会留下半截输出。一次生成对应一个实例。
+ */
+@Slf4j
+public class StreamingCodeFileSaver implements CodeFileListener {
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final Path dirPath;
+
+    /**
+     * 正在写入的临时文件
+     */
+    private final Map<String, Path> tempFiles = new HashMap<>();
+
+    private final Map<String, Writer> writers = new HashMap<>();
+
+    /**
+     * 已闭合、等待发布的临时文件
+     */
+    private final Map<String, Path> closedFiles = new LinkedHashMap<>();
+
+    /**
+     * 首个代码块出现之前的普通文本，仅用于单文件模式下没有代码块时的兜底
+     */
+    private StringBuilder plainText = new StringBuilder();
+
+    /**
+     * 本次生成新增或内容变化的文件，发布后可用
+     */
+    @Getter
+    private List<String> changedFiles = List.of();
+
+    public StreamingCodeFileSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        this.codeGenType = codeGenType;
+        this.dirPath = Path.of(CodeFileSaverTemplate.buildDir(codeGenType, appId));
+    }
+
+    @Override
+    public void onFileStart(String fileName) {
+        plainText = null;
+        Path tempFile = dirPath.resolve(StrUtil.format(".{}.{}.tmp", fileName, IdUtil.getSnowflakeNextIdStr()));
+        try {
+            writers.put(fileName, Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8));
+            tempFiles.put(fileName, tempFile);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "创建临时文件失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFileContent(String fileName, CharSequence content) {
+        try {
+            writers.get(fileName).append(content);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入文件失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFileEnd(String fileName) {
+        closedFiles.put(fileName, tempFiles.remove(fileName));
+        try {
+            writers.remove(fileName).close();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入文件失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onPlainText(CharSequence text) {
+        if (plainText != null) {
+            plainText.append(text);
+        }
+    }
+
+    /**
+     * 流正常结束，发布所有内容有变化的已闭合文件；单文件模式下没有任何代码块时将全部内容作为 index.html
+     *
+     * @return 应用目录
+     */
+    public File complete() {
+        CodeFileStore codeFileStore = CodeFileStore.getInstance();
+        Map<String, String> previousManifest = codeFileStore.getManifest(dirPath);
+        if (closedFiles.isEmpty() && codeGenType == CodeGenTypeEnum.HTML && plainText != null) {
+            CodeFileSaverTemplate.writeToFile(dirPath.toString(), "index.html", plainText.toString().trim());
+        }
+        try {
+            for (Map.Entry<String, Path> entry : closedFiles.entrySet()) {
+                // 内容与上次保存的相同时丢弃临时文件，不替换正式文件
+                if (CodeFileStore.hash(entry.getValue()).equals(previousManifest.get(entry.getKey()))) {
+                    deleteQuietly(entry.getValue());
+                } else {
+                    CodeFileStore.replaceFile(entry.getValue(), dirPath.resolve(entry.getKey()));
+                }
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "发布文件失败：" + e.getMessage());
+        } finally {
+            closedFiles.clear();
+        }
+        Map<String, String> manifest = codeFileStore.commit(dirPath);
+        changedFiles = CodeFileStore.changedFiles(previousManifest, manifest);
+        CodeVersionStore.getInstance().record(dirPath, manifest);
+        return dirPath.toFile();
+    }
+
+    /**
+     * 流被取消或出错，丢弃全部临时文件，应用目录保持上一次生成的结果
+     */
+    public void abort() {
+        writers.forEach((fileName, writer) -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("关闭临时文件失败：{}", tempFiles.get(fileName), e);
+            }
+        });
+        writers.clear();
+        tempFiles.values().forEach(StreamingCodeFileSaver::deleteQuietly);
+        tempFiles.clear();
+        closedFiles.values().forEach(StreamingCodeFileSaver::deleteQuietly);
+        closedFiles.clear();
+    }
+
+    static void deleteQuietly(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("清理临时文件失败：{}", tempFile, e);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.aicodemother.cores.scheduler;
+
+import com.example.aicodemother.config.GenerationSchedulerConfig;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 生成准入调度器
+ * 在调用模型之前限制全局并发数，超出的请求排队：管理员和精选应用走优先通道，
+ * 其余请求按用户加权公平排队（每个用户的请求按虚拟完成时间排序，单个用户的突发请求不会挤占其他用户），
+ * 排队位置变化时通过回调通知调用方
+ */
+@Slf4j
+@Component
+public class GenerationScheduler {
+
+    private static final String METRIC_PREFIX = "ai.generation.scheduler";
+
+    private final Deque<Ticket> priorityLane = new ArrayDeque<>();
+
+    private final PriorityQueue<Ticket> fairQueue = new PriorityQueue<>(
+            Comparator.comparingDouble(Ticket::getFinishTag).thenComparingLong(Ticket::getSequence));
+
+    /**
+     * 每个用户最后一个排队请求的虚拟完成时间
+     */
+    private final Map<Long, Double> userFinishTags = new HashMap<>();
+
+    private int running;
+
+    private long sequence;
+
+    private double virtualTime;
+
+    @Resource
+    private GenerationSchedulerConfig generationSchedulerConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder(METRIC_PREFIX + ".running", this, scheduler -> scheduler.getRunning())
+                .description("正在调用模型的生成数")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queue.size", this, scheduler -> scheduler.getQueueSize())
+                .description("排队等待的生成数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder(METRIC_PREFIX + ".wait")
+                .description("生成请求排队耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 申请生成名额，获得名额后才执行生成
+     *
+     * @param userId           用户 ID，用于公平排队
+     * @param priority         是否走优先通道
+     * @param task             生成逻辑
+     * @param positionListener 排队位置回调（从 1 开始），获得名额时回调 0
+     * @return 生成流
+     */
+    public <T> Flux<T> schedule(Long userId, boolean priority, Supplier<Flux<T>> task, IntConsumer positionListener) {
+        return Flux.defer(() -> {
+            Ticket ticket;
+            List<Runnable> notifications;
+            synchronized (this) {
+                if (running < generationSchedulerConfig.getMaxConcurrent() && getQueueSize() == 0) {
+                    running++;
+                    return run(task);
+                }
+                if (getQueueSize() >= generationSchedulerConfig.getMaxQueueSize()) {
+                    throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "当前生成请求过多，请稍后再试");
+                }
+                ticket = new Ticket(sequence++, positionListener);
+                if (priority) {
+                    priorityLane.add(ticket);
+                } else {
+                    double startTag = Math.max(virtualTime, userFinishTags.getOrDefault(userId, 0D));
+                    ticket.finishTag = startTag + 1D / getWeight(userId);
+                    userFinishTags.put(userId, ticket.finishTag);
+                    fairQueue.add(ticket);
+                }
+                notifications = collectPositions();
+            }
+            notifications.forEach(Runnable::run);
+            return waitForAdmission(ticket).thenMany(run(task));
+        });
+    }
+
+    private <T> Flux<T> run(Supplier<Flux<T>> task) {
+        return Flux.defer(task).doFinally(signal -> releaseSlot());
+    }
+
+    /**
+     * 等待名额，获得名额后切换到 boundedElastic 线程继续
+     * 放行信号在归还名额的线程（上一个生成的模型回调或 Netty 线程）上发出，生成逻辑开头有阻塞的数据库写入，不能在该线程上执行；
+     * 切换线程在取消处理之前完成，获得名额后、开始生成前断开时仍能归还名额
+     */
+    private Mono<Void> waitForAdmission(Ticket ticket) {
+        Mono<Void> admitted = ticket.admitted.asMono().publishOn(Schedulers.boundedElastic());
+        return admitted
+                .timeout(generationSchedulerConfig.getQueueTimeout(), Mono.defer(() -> {
+                    if (ticket.abandon()) {
+                        removeTicket(ticket);
+                        return Mono.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, "排队超时，请稍后再试"));
+                    }
+                    return admitted;
+                }))
+                .doOnCancel(() -> {
+                    if (ticket.abandon()) {
+                        removeTicket(ticket);
+                    } else if (!ticket.started) {
+                        // 已获得名额但还未开始生成时客户端断开，归还名额
+                        releaseSlot();
+                    }
+                })
+                .doOnSuccess(ignored -> {
+                    ticket.started = true;
+                    waitTimer.record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+                });
+    }
+
+    private void removeTicket(Ticket ticket) {
+        List<Runnable> notifications;
+        synchronized (this) {
+            if (!priorityLane.remove(ticket)) {
+                fairQueue.remove(ticket);
+            }
+            notifications = collectPositions();
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    /**
+     * 归还名额，并按优先通道、公平队列的顺序放行排队请求
+     */
+    private void releaseSlot() {
+        List<Ticket> admitted = new ArrayList<>();
+        List<Runnable> notifications;
+        synchronized (this) {
+            running--;
+            while (running < generationSchedulerConfig.getMaxConcurrent()) {
+                Ticket next = pollNext();
+                if (next == null) {
+                    break;
+                }
+                if (next.claim()) {
+                    running++;
+                    admitted.add(next);
+                }
+            }
+            notifications = collectPositions();
+        }
+        for (Ticket ticket : admitted) {
+            ticket.positionListener.accept(0);
+            ticket.admitted.tryEmitEmpty();
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    private Ticket pollNext() {
+        Ticket next = priorityLane.poll();
+        if (next != null) {
+            return next;
+        }
+        next = fairQueue.poll();
+        if (next != null) {
+            virtualTime = next.finishTag;
+            // 已无排队请求的用户不再需要记录完成时间
+            userFinishTags.values().removeIf(finishTag -> finishTag <= virtualTime);
+        }
+        return next;
+    }
+
+    /**
+     * 计算每个排队请求的当前位置，在锁外回调
+     */
+    private List<Runnable> collectPositions() {
+        List<Runnable> notifications = new ArrayList<>(getQueueSize());
+        int position = 0;
+        for (Ticket ticket : priorityLane) {
+            notifications.add(ticket.positionNotification(++position));
+        }
+        List<Ticket> fairOrder = new ArrayList<>(fairQueue);
+        fairOrder.sort(fairQueue.comparator());
+        for (Ticket ticket : fairOrder) {
+            notifications.add(ticket.positionNotification(++position));
+        }
+        return notifications;
+    }
+
+    private int getWeight(Long userId) {
+        int weight = generationSchedulerConfig.getUserWeights()
+                .getOrDefault(userId, generationSchedulerConfig.getDefaultWeight());
+        return Math.max(weight, 1);
+    }
+
+    private synchronized int getRunning() {
+        return running;
+    }
+
+    private synchronized int getQueueSize() {
+        return priorityLane.size() + fairQueue.size();
+    }
+
+    /**
+     * 排队凭证
+     */
+    private static class Ticket {
+
+        private static final int WAITING = 0;
+
+        private static final int CLAIMED = 1;
+
+        private static final int ABANDONED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private final Sinks.Empty<Void> admitted = Sinks.empty();
+
+        private final long sequence;
+
+        private final IntConsumer positionListener;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private double finishTag;
+
+        /**
+         * 最近一次通知的位置，位置不变时不重复通知
+         */
+        private int lastPosition;
+
+        private volatile boolean started;
+
+        Ticket(long sequence, IntConsumer positionListener) {
+            this.sequence = sequence;
+            this.positionListener = positionListener;
+        }
+
+        double getFinishTag() {
+            return finishTag;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        Runnable positionNotification(int position) {
+            if (position == lastPosition) {
+                return () -> {
+                };
+            }
+            lastPosition = position;
+            return () -> positionListener.accept(position);
+        }
+
+        boolean claim() {
+            return state.compareAndSet(WAITING, CLAIMED);
+        }
+
+        boolean abandon() {
+            return state.compareAndSet(WAITING, ABANDONED);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.aicodemother.cores.session;
+
+import com.example.aicodemother.cores.stream.GenerationStream;
+import lombok.Getter;
+import lombok.Setter;
+import reactor.core.publisher.Sinks;
+
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 应用生成会话，对应某个应用当前唯一一次进行中的生成
+ * 状态变更均在 {@link GenerationSessionManager} 的锁内进行
+ */
+@Getter
+public class GenerationSession {
+
+    private final Long appId;
+
+    /**
+     * 排队等待接手该应用的请求，会话结束时按先后顺序移交给下一个会话
+     */
+    private final Deque<Waiter> waiters;
+
+    /**
+     * 本次生成的提示词
+     */
+    @Setter
+    private String message;
+
+    /**
+     * 可被多个订阅者共享、可续传的生成流，首次订阅时才真正调用模型
+     */
+    @Setter
+    private GenerationStream stream;
+
+    GenerationSession(Long appId, Deque<Waiter> waiters) {
+        this.appId = appId;
+        this.waiters = waiters;
+    }
+
+    /**
+     * 排队中的请求
+     */
+    static class Waiter {
+
+        private static final int WAITING = 0;
+
+        private static final int CLAIMED = 1;
+
+        private static final int ABANDONED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        final Sinks.One<GenerationSession> handover = Sinks.one();
+
+        /**
+         * 移交给该请求，请求已放弃时返回 false
+         */
+        boolean claim() {
+            return state.compareAndSet(WAITING, CLAIMED);
+        }
+
+        /**
+         * 放弃排队（超时或客户端断开），已经接手时返回 false
+         */
+        boolean abandon() {
+            return state.compareAndSet(WAITING, ABANDONED);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.aicodemother.cores.session;
+
+import com.example.aicodemother.config.GenerationSessionConfig;
+import com.example.aicodemother.cores.stream.GenerationChunk;
+import com.example.aicodemother.cores.stream.GenerationListener;
+import com.example.aicodemother.cores.stream.GenerationStream;
+import com.example.aicodemother.cores.stream.GenerationStreamRegistry;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import com.example.aicodemother.model.enums.GenConflictModeEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 应用生成会话管理
+ * 同一应用同一时刻只允许一次生成：相同提示词的重复请求（双击、重试）加入进行中的生成共享输出，
+ * 其余请求在该应用的短队列中按先后顺序等待，避免重复调用模型以及多个生成交错写入同一目录
+ */
+@Slf4j
+@Component
+public class GenerationSessionManager {
+
+    private final Map<Long, GenerationSession> sessions = new HashMap<>();
+
+    @Resource
+    private GenerationSessionConfig generationSessionConfig;
+
+    @Resource
+    private GenerationStreamRegistry generationStreamRegistry;
+
+    /**
+     * 以应用为单位执行生成
+     *
+     * @param appId      应用 ID
+     * @param userId     发起生成的用户 ID
+     * @param message    用户提示词
+     * @param listener   生成开始时回调生成 ID
+     * @param generation 真正发起生成的逻辑，轮到该请求时才会调用
+     * @return 带序号的生成流
+     */
+    public Flux<GenerationChunk> execute(Long appId, Long userId, String message, GenerationListener listener,
+                                         Supplier<Flux<String>> generation) {
+        return Flux.defer(() -> {
+            GenerationSession.Waiter waiter;
+            synchronized (sessions) {
+                GenerationSession running = sessions.get(appId);
+                if (running == null) {
+                    GenerationSession session = new GenerationSession(appId, new ArrayDeque<>());
+                    sessions.put(appId, session);
+                    return start(session, userId, message, listener, generation);
+                }
+                if (getMode() == GenConflictModeEnum.JOIN && message.equals(running.getMessage())
+                        && running.getStream() != null) {
+                    log.info("加入进行中的生成，appId：{}", appId);
+                    GenerationStream stream = running.getStream();
+                    listener.onStart(stream.getGenerationId());
+                    return stream.subscribe(-1);
+                }
+                if (running.getWaiters().size() >= generationSessionConfig.getQueueCapacity()) {
+                    throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "该应用正在生成中，请稍后再试");
+                }
+                waiter = new GenerationSession.Waiter();
+                running.getWaiters().add(waiter);
+                log.info("应用正在生成，请求进入排队，appId：{}，排队数：{}", appId, running.getWaiters().size());
+            }
+            return waitForTurn(appId, waiter)
+                    .flatMapMany(session -> start(session, userId, message, listener, generation));
+        });
+    }
+
+    /**
+     * 在应用没有进行中的生成时独占执行操作（如恢复版本），执行期间到达的生成请求排队，结束后按顺序开始
+     *
+     * @param appId  应用 ID
+     * @param action 操作
+     * @return 操作结果
+     * @throws BusinessException 应用正在生成中
+     */
+    public <T> T executeExclusive(Long appId, Supplier<T> action) {
+        GenerationSession session;
+        synchronized (sessions) {
+            if (sessions.containsKey(appId)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "应用正在生成中，请稍后再试");
+            }
+            session = new GenerationSession(appId, new ArrayDeque<>());
+            sessions.put(appId, session);
+        }
+        try {
+            return action.get();
+        } finally {
+            release(session);
+        }
+    }
+
+    /**
+     * 获取应用进行中的会话
+     *
+     * @param appId 应用 ID
+     * @return 会话，不存在时返回 null
+     */
+    public GenerationSession getSession(Long appId) {
+        synchronized (sessions) {
+            return sessions.get(appId);
+        }
+    }
+
+    private Flux<GenerationChunk> start(GenerationSession session, Long userId, String message,
+                                        GenerationListener listener, Supplier<Flux<String>> generation) {
+        GenerationStream stream = generationStreamRegistry.create(session.getAppId(), userId,
+                Flux.defer(generation).doFinally(signal -> release(session)));
+        synchronized (sessions) {
+            session.setMessage(message);
+            session.setStream(stream);
+        }
+        listener.onStart(stream.getGenerationId());
+        return stream.subscribe(-1);
+    }
+
+    /**
+     * 等待上一个生成移交会话，接手后切换到 boundedElastic 线程开始生成（移交在上一个生成结束的线程上发生）
+     */
+    private Mono<GenerationSession> waitForTurn(Long appId, GenerationSession.Waiter waiter) {
+        Mono<GenerationSession> handover = waiter.handover.asMono().publishOn(Schedulers.boundedElastic());
+        return handover
+                .timeout(generationSessionConfig.getQueueTimeout(), Mono.defer(() -> {
+                    if (waiter.abandon()) {
+                        removeWaiter(appId, waiter);
+                        return Mono.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, "排队超时，请稍后再试"));
+                    }
+                    // 超时的同时刚好轮到该请求
+                    return handover;
+                }))
+                .doOnCancel(() -> {
+                    if (waiter.abandon()) {
+                        removeWaiter(appId, waiter);
+                    } else {
+                        // 已经接手但还未开始生成时客户端断开，继续移交给下一个请求
+                        waiter.handover.asMono().subscribe(this::releaseIfNotStarted);
+                    }
+                });
+    }
+
+    private void removeWaiter(Long appId, GenerationSession.Waiter waiter) {
+        synchronized (sessions) {
+            GenerationSession session = sessions.get(appId);
+            if (session != null) {
+                session.getWaiters().remove(waiter);
+            }
+        }
+    }
+
+    private void releaseIfNotStarted(GenerationSession session) {
+        boolean started;
+        synchronized (sessions) {
+            started = session.getStream() != null;
+        }
+        if (!started) {
+            release(session);
+        }
+    }
+
+    /**
+     * 会话结束，移交给下一个仍在等待的请求，没有则移除会话
+     */
+    private void release(GenerationSession session) {
+        GenerationSession.Waiter next;
+        GenerationSession nextSession;
+        synchronized (sessions) {
+            if (sessions.get(session.getAppId()) != session) {
+                return;
+            }
+            do {
+                next = session.getWaiters().poll();
+            } while (next != null && !next.claim());
+            if (next == null) {
+                sessions.remove(session.getAppId());
+                return;
+            }
+            nextSession = new GenerationSession(session.getAppId(), session.getWaiters());
+            sessions.put(session.getAppId(), nextSession);
+        }
+        next.handover.tryEmitValue(nextSession);
+    }
+
+    private GenConflictModeEnum getMode() {
+        GenConflictModeEnum mode = GenConflictModeEnum.getEnumByValue(generationSessionConfig.getMode());
+        return mode == null ? GenConflictModeEnum.QUEUE : mode;
+    }
+}
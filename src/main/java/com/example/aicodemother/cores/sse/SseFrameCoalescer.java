@@ -0,0 +1,135 @@
+package com.example.aicodemother.cores.sse;
+
+import com.example.aicodemother.cores.stream.GenerationChunk;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 帧合并
+ * 将模型逐 token 输出的片段按时间窗口或字符数合并为帧，帧的序号取其中最后一个片段的序号：一帧从收到第一个片段开始计时，
+ * 窗口到期或累积字符数达到上限时推送，首个片段的额外延迟不超过一个窗口。
+ * 下游取消时同步取消上游，不影响模型流的取消处理。
+ */
+public class SseFrameCoalescer {
+
+    private SseFrameCoalescer() {
+    }
+
+    /**
+     * @param chunks        模型输出片段
+     * @param window        合并窗口，为 0 时不合并
+     * @param maxFrameChars 单帧最大字符数
+     * @return 合并后的帧
+     */
+    public static Flux<GenerationChunk> coalesce(Flux<GenerationChunk> chunks, Duration window, int maxFrameChars) {
+        return coalesce(chunks, window, maxFrameChars, Schedulers.parallel());
+    }
+
+    static Flux<GenerationChunk> coalesce(Flux<GenerationChunk> chunks, Duration window, int maxFrameChars,
+                                          Scheduler timer) {
+        if (window.isZero() || window.isNegative()) {
+            return chunks;
+        }
+        return Flux.create(sink -> {
+            FrameSubscriber subscriber = new FrameSubscriber(sink, window.toNanos(), maxFrameChars, timer);
+            sink.onDispose(subscriber::stop);
+            chunks.subscribe(subscriber);
+        });
+    }
+
+    private static class FrameSubscriber extends BaseSubscriber<GenerationChunk> {
+
+        private final FluxSink<GenerationChunk> sink;
+
+        private final long windowNanos;
+
+        private final int maxFrameChars;
+
+        private final Scheduler timer;
+
+        private final StringBuilder frame = new StringBuilder();
+
+        /**
+         * 当前帧最后一个片段
+         */
+        private GenerationChunk last;
+
+        private Disposable scheduledFlush;
+
+        private boolean stopped;
+
+        FrameSubscriber(FluxSink<GenerationChunk> sink, long windowNanos, int maxFrameChars, Scheduler timer) {
+            this.sink = sink;
+            this.windowNanos = windowNanos;
+            this.maxFrameChars = maxFrameChars;
+            this.timer = timer;
+        }
+
+        /**
+         * 推送均在锁内完成，保证定时推送与字符数触发的推送不会乱序
+         */
+        @Override
+        protected synchronized void hookOnNext(GenerationChunk chunk) {
+            if (stopped) {
+                return;
+            }
+            frame.append(chunk.getText());
+            last = chunk;
+            if (frame.length() >= maxFrameChars) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flushOnTimer, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        protected synchronized void hookOnComplete() {
+            flush();
+            sink.complete();
+        }
+
+        @Override
+        protected synchronized void hookOnError(Throwable throwable) {
+            flush();
+            sink.error(throwable);
+        }
+
+        private synchronized void flushOnTimer() {
+            scheduledFlush = null;
+            if (!stopped) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (scheduledFlush != null) {
+                scheduledFlush.dispose();
+                scheduledFlush = null;
+            }
+            if (!frame.isEmpty()) {
+                GenerationChunk ready = new GenerationChunk(last.getGenerationId(), last.getSeq(), frame.toString());
+                frame.setLength(0);
+                sink.next(ready);
+            }
+        }
+
+        void stop() {
+            synchronized (this) {
+                stopped = true;
+                if (scheduledFlush != null) {
+                    scheduledFlush.dispose();
+                    scheduledFlush = null;
+                }
+                frame.setLength(0);
+            }
+            dispose();
+        }
+    }
+}
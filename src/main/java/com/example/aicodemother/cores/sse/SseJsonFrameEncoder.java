@@ -0,0 +1,74 @@
+package com.example.aicodemother.cores.sse;
+
+/**
+ * 生成内容帧编码器
+ * 专门编码 {"d":"..."} 这一种帧结构：直接将片段转义写入复用的缓冲区，
+ * 不再为每帧创建 Map、经过反射序列化，每帧只产生最终的 JSON 字符串。
+ * 缓冲区不加锁，一个事件流对应一个实例（流内的 map 是串行执行的）。
+ */
+public class SseJsonFrameEncoder {
+
+    private static final String PREFIX = "{\"d\":\"";
+
+    private static final String SUFFIX = "\"}";
+
+    private static final char LINE_SEPARATOR = 0x2028;
+
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    /**
+     * @param chunk 生成内容
+     * @return {"d":"转义后的内容"}
+     */
+    public String encode(CharSequence chunk) {
+        buffer.setLength(0);
+        buffer.append(PREFIX);
+        int length = chunk.length();
+        // 不需要转义的连续区间整段追加
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chunk.charAt(i);
+            if (!needsEscape(c)) {
+                continue;
+            }
+            buffer.append(chunk, start, i);
+            appendEscaped(c);
+            start = i + 1;
+        }
+        buffer.append(chunk, start, length);
+        buffer.append(SUFFIX);
+        String frame = buffer.toString();
+        // 超长帧不保留大缓冲区
+        if (buffer.capacity() > 64 * 1024) {
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+        return frame;
+    }
+
+    private static boolean needsEscape(char c) {
+        // U+2028、U+2029 在 JSON 中合法，但会被部分 JavaScript 解析器视为换行
+        return c < 0x20 || c == '"' || c == '\\' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+    }
+
+    private void appendEscaped(char c) {
+        switch (c) {
+            case '"' -> buffer.append("\\\"");
+            case '\\' -> buffer.append("\\\\");
+            case '\n' -> buffer.append("\\n");
+            case '\r' -> buffer.append("\\r");
+            case '\t' -> buffer.append("\\t");
+            case '\b' -> buffer.append("\\b");
+            case '\f' -> buffer.append("\\f");
+            default -> buffer.append("\\u")
+                    .append(HEX_DIGITS[(c >> 12) & 0xF])
+                    .append(HEX_DIGITS[(c >> 8) & 0xF])
+                    .append(HEX_DIGITS[(c >> 4) & 0xF])
+                    .append(HEX_DIGITS[c & 0xF]);
+        }
+    }
+}
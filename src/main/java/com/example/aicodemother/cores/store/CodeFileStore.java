@@ -0,0 +1,492 @@
+package com.example.aicodemother.cores.store;
+
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.aicodemother.constant.AppConstant;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 内容寻址的代码文件存储
+ * 文件内容按 SHA-256 存为存储对象（blobs/前两位/哈希），每个目录（生成目录、部署目录）对应一份清单（文件名 -> 哈希）。
+ * 目录中的文件是指向存储对象的硬链接，内容相同的文件只占一份磁盘空间，部署只需按清单创建链接，不再复制内容。
+ * 存储对象不可原地修改，目录中的文件只能通过写入临时文件再重命名的方式替换。文件系统不支持硬链接时退化为复制。
+ * 文本类文件在登记时按内容生成一次 gzip 版本（哈希.gz），目录中以「文件名.gz」链接，静态资源直接返回，不再按请求压缩。
+ * 不再被任何目录使用、只被历史版本引用的存储对象打包为只保留 gzip 版本，检出时再解压；没有任何引用的存储对象由 {@link #gc} 删除。
+ */
+@Slf4j
+public class CodeFileStore {
+
+    private static final CodeFileStore INSTANCE = new CodeFileStore(Path.of(AppConstant.CODE_STORE_ROOT_DIR));
+
+    /**
+     * 预压缩版本的文件名后缀
+     */
+    public static final String GZIP_SUFFIX = ".gz";
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of("html", "css", "js", "json", "svg", "txt");
+
+    /**
+     * 小于该字节数的文件压缩收益不抵响应头开销，不生成压缩版本
+     */
+    private static final long MIN_COMPRESS_SIZE = 256;
+
+    private final Path blobDir;
+
+    private final Path manifestDir;
+
+    public CodeFileStore(Path rootDir) {
+        this.blobDir = rootDir.resolve("blobs");
+        this.manifestDir = rootDir.resolve("manifests");
+    }
+
+    public static CodeFileStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 登记目录：目录下的文件存入存储（已有相同内容时改为链接到已有对象），并记录目录清单
+     * 仍链接着清单中存储对象的文件没有被替换过，直接沿用原哈希，不重新读取内容
+     *
+     * @param dir 应用目录，忽略以 . 开头的临时文件
+     * @return 目录清单，文件名 -> 内容哈希
+     */
+    public Map<String, String> commit(Path dir) {
+        Path manifestFile = manifestFile(dir);
+        try {
+            Map<String, String> previous = readManifest(manifestFile);
+            // 登记过程中失败时不留下过期的清单，下次读取时重新登记
+            Files.deleteIfExists(manifestFile);
+            Map<String, String> manifest = new TreeMap<>();
+            for (Path file : listFiles(dir)) {
+                String fileName = file.getFileName().toString();
+                String hash = previous == null ? null : previous.get(fileName);
+                if (hash == null || !isStored(file, hash)) {
+                    hash = hash(file);
+                    storeBlob(file, hash);
+                }
+                manifest.put(fileName, hash);
+            }
+            linkCompressedFiles(dir, manifest);
+            writeManifest(manifestFile, manifest);
+            return manifest;
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "登记代码文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取目录清单，目录尚未登记（存储启用前生成的应用）时先登记
+     */
+    public Map<String, String> getManifest(Path dir) {
+        Map<String, String> manifest;
+        try {
+            manifest = readManifest(manifestFile(dir));
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取代码清单失败：" + e.getMessage());
+        }
+        return manifest == null ? commit(dir) : manifest;
+    }
+
+    /**
+     * 两份清单之间新增或内容变化的文件
+     */
+    public static List<String> changedFiles(Map<String, String> before, Map<String, String> after) {
+        return after.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(before.get(entry.getKey())))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * 按清单检出到目标目录：文件链接到存储对象，目标目录中清单之外的文件被删除
+     */
+    public void checkout(Map<String, String> manifest, Path targetDir) {
+        try {
+            Files.createDirectories(targetDir);
+            for (Map.Entry<String, String> entry : manifest.entrySet()) {
+                Path blob = blobPath(entry.getValue());
+                if (!Files.isRegularFile(blob)) {
+                    unpackBlob(entry.getValue());
+                }
+                if (!Files.isRegularFile(blob)) {
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码文件不存在：" + entry.getKey());
+                }
+                Path target = targetDir.resolve(entry.getKey());
+                if (!Files.isRegularFile(target) || !Files.isSameFile(target, blob)) {
+                    replaceWithBlob(target, blob);
+                }
+            }
+            for (Path file : listFiles(targetDir)) {
+                if (!manifest.containsKey(file.getFileName().toString())) {
+                    Files.delete(file);
+                }
+            }
+            linkCompressedFiles(targetDir, manifest);
+            writeManifest(manifestFile(targetDir), manifest);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "检出代码文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 存储对象路径
+     */
+    public Path blobPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * 读取存储对象内容，已打包的存储对象从 gzip 版本解压读取
+     */
+    public InputStream openBlob(String hash) throws IOException {
+        Path blob = blobPath(hash);
+        if (Files.isRegularFile(blob)) {
+            return Files.newInputStream(blob);
+        }
+        Path compressed = compressedBlobPath(hash);
+        if (!Files.isRegularFile(compressed)) {
+            throw new NoSuchFileException(blob.toString());
+        }
+        return new GZIPInputStream(Files.newInputStream(compressed));
+    }
+
+    /**
+     * 打包不再被目录使用的存储对象：只保留 gzip 版本，删除原始内容
+     * 目录中的文件都是存储对象的硬链接，原始内容的链接数为 1 即没有目录在使用；无法获取链接数时不打包
+     *
+     * @param hashes 可能已不再使用的存储对象，如保存时被替换掉的文件
+     */
+    public void pack(Collection<String> hashes) {
+        for (String hash : hashes) {
+            try {
+                Path blob = blobPath(hash);
+                if (Files.isRegularFile(blob) && linkCount(blob) == 1) {
+                    gzipBlob(hash);
+                    Files.delete(blob);
+                }
+            } catch (IOException e) {
+                // 打包失败只是多占一些空间
+                log.warn("打包存储对象失败：{}", hash, e);
+            }
+        }
+    }
+
+    /**
+     * 清理存储对象：没有目录在使用的对象，仍被引用的打包，不再被引用的删除
+     * 仍被目录链接着的对象（如正在登记、清单尚未写入）不处理
+     *
+     * @param referenced 仍被目录清单或历史版本引用的哈希
+     * @return 删除的文件数
+     */
+    public int gc(Set<String> referenced) {
+        if (!Files.isDirectory(blobDir)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(blobDir, 2)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(".") || linkCount(file) != 1) {
+                    continue;
+                }
+                String hash = StrUtil.removeSuffix(fileName, GZIP_SUFFIX);
+                if (!referenced.contains(hash)) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                } else if (!fileName.endsWith(GZIP_SUFFIX)) {
+                    pack(List.of(hash));
+                }
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "清理代码文件失败：" + e.getMessage());
+        }
+        return deleted;
+    }
+
+    /**
+     * 所有目录清单引用的哈希
+     */
+    public Set<String> referencedHashes() {
+        Set<String> hashes = new HashSet<>();
+        if (!Files.isDirectory(manifestDir)) {
+            return hashes;
+        }
+        try (Stream<Path> files = Files.walk(manifestDir, 2)) {
+            for (Path file : files.filter(CodeFileStore::isJsonFile).toList()) {
+                Map<String, String> manifest = readManifest(file);
+                if (manifest != null) {
+                    hashes.addAll(manifest.values());
+                }
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取代码清单失败：" + e.getMessage());
+        }
+        return hashes;
+    }
+
+    public static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtil.sha256Hex(in);
+        }
+    }
+
+    /**
+     * 文本按 UTF-8 写入文件后的内容哈希
+     */
+    public static String hash(String content) {
+        return DigestUtil.sha256Hex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean isStored(Path file, String hash) throws IOException {
+        Path blob = blobPath(hash);
+        return Files.isRegularFile(blob) && Files.isSameFile(file, blob);
+    }
+
+    /**
+     * 内容首次出现时将文件本身链接为存储对象，否则把文件替换为指向已有对象的链接
+     */
+    private void storeBlob(Path file, String hash) throws IOException {
+        Path blob = blobPath(hash);
+        if (Files.isRegularFile(blob)) {
+            if (!Files.isSameFile(file, blob)) {
+                replaceWithBlob(file, blob);
+            }
+            return;
+        }
+        Files.createDirectories(blob.getParent());
+        try {
+            Files.createLink(blob, file);
+        } catch (FileAlreadyExistsException e) {
+            // 并发登记了相同内容
+            replaceWithBlob(file, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            Path tempBlob = tempSibling(blob);
+            try {
+                Files.copy(file, tempBlob);
+                moveAtomically(tempBlob, blob);
+            } finally {
+                Files.deleteIfExists(tempBlob);
+            }
+        }
+    }
+
+    /**
+     * 先在同一目录创建临时链接（或副本），再原子重命名为目标文件
+     */
+    private static void replaceWithBlob(Path target, Path blob) throws IOException {
+        Path temp = tempSibling(target);
+        try {
+            try {
+                Files.createLink(temp, blob);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(blob, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 清单按目录所在的根目录和目录名存放，如 manifests/code_output/html_1.json
+     */
+    private Path manifestFile(Path dir) {
+        Path absoluteDir = dir.toAbsolutePath().normalize();
+        return manifestDir.resolve(absoluteDir.getParent().getFileName().toString())
+                .resolve(absoluteDir.getFileName() + ".json");
+    }
+
+    private static Map<String, String> readManifest(Path manifestFile) throws IOException {
+        if (!Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+        JSONObject json = JSONUtil.parseObj(Files.readString(manifestFile, StandardCharsets.UTF_8));
+        Map<String, String> manifest = new TreeMap<>();
+        json.forEach((fileName, hash) -> manifest.put(fileName, hash.toString()));
+        return manifest;
+    }
+
+    private static void writeManifest(Path manifestFile, Map<String, String> manifest) throws IOException {
+        Files.createDirectories(manifestFile.getParent());
+        Path temp = tempSibling(manifestFile);
+        try {
+            Files.writeString(temp, JSONUtil.toJsonStr(manifest), StandardCharsets.UTF_8);
+            moveAtomically(temp, manifestFile);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 为目录中的文件链接预压缩版本，并删除源文件已不在清单中的压缩版本
+     */
+    private void linkCompressedFiles(Path dir, Map<String, String> manifest) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            Path target = dir.resolve(entry.getKey() + GZIP_SUFFIX);
+            Path compressed = compressBlob(entry.getKey(), entry.getValue());
+            if (compressed == null) {
+                Files.deleteIfExists(target);
+            } else if (!Files.isRegularFile(target) || !Files.isSameFile(target, compressed)) {
+                replaceWithBlob(target, compressed);
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(CodeFileStore::isCompressedFile).toList()) {
+                String fileName = file.getFileName().toString();
+                if (!manifest.containsKey(StrUtil.removeSuffix(fileName, GZIP_SUFFIX))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成存储对象的 gzip 版本，同一内容只压缩一次；压缩级别取最高，开销只在首次保存时产生
+     *
+     * @return 压缩版本路径，文件类型不适合压缩或文件过小时为 null
+     */
+    private Path compressBlob(String fileName, String hash) throws IOException {
+        Path blob = blobPath(hash);
+        if (!COMPRESSIBLE_EXTENSIONS.contains(FileNameUtil.extName(fileName).toLowerCase())
+                || Files.size(blob) < MIN_COMPRESS_SIZE) {
+            return null;
+        }
+        return gzipBlob(hash);
+    }
+
+    /**
+     * @return 存储对象的 gzip 版本，不存在时生成
+     */
+    private Path gzipBlob(String hash) throws IOException {
+        Path blob = blobPath(hash);
+        Path compressed = compressedBlobPath(hash);
+        if (Files.isRegularFile(compressed)) {
+            return compressed;
+        }
+        Path temp = tempSibling(compressed);
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp)) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                Files.copy(blob, out);
+            }
+            moveAtomically(temp, compressed);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return compressed;
+    }
+
+    /**
+     * 已打包的存储对象检出前先解压还原
+     */
+    private void unpackBlob(String hash) throws IOException {
+        Path compressed = compressedBlobPath(hash);
+        if (!Files.isRegularFile(compressed)) {
+            return;
+        }
+        Path blob = blobPath(hash);
+        Path temp = tempSibling(blob);
+        try {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+                Files.copy(in, temp);
+            }
+            moveAtomically(temp, blob);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path compressedBlobPath(String hash) {
+        return blobPath(hash).resolveSibling(hash + GZIP_SUFFIX);
+    }
+
+    /**
+     * @return 文件的硬链接数，文件系统不支持时返回 -1
+     */
+    private static int linkCount(Path file) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    static boolean isJsonFile(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.endsWith(".json") && !fileName.startsWith(".") && Files.isRegularFile(file);
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .filter(file -> !isCompressedFile(file))
+                    .toList();
+        }
+    }
+
+    private static boolean isCompressedFile(Path file) {
+        String fileName = file.getFileName().toString();
+        return !fileName.startsWith(".") && fileName.endsWith(GZIP_SUFFIX) && Files.isRegularFile(file);
+    }
+
+    private static Path tempSibling(Path file) {
+        return file.resolveSibling(StrUtil.format(".{}.{}.tmp", file.getFileName(), IdUtil.getSnowflakeNextIdStr()));
+    }
+
+    /**
+     * 用新内容替换目录中的文件：先删除旧内容的预压缩版本再原子重命名，
+     * 登记前即使失败也不会按旧的压缩版本提供新文件，下次登记时重新生成
+     *
+     * @param source 新内容所在的临时文件
+     * @param target 目录中的文件
+     */
+    public static void replaceFile(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target.resolveSibling(target.getFileName() + GZIP_SUFFIX));
+        moveAtomically(source, target);
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.aicodemother.cores.store;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 应用代码的一个版本：保存时目录的清单，文件内容在内容寻址存储中
+ */
+@Data
+public class CodeVersion {
+
+    /**
+     * 版本号，每个应用从 1 开始递增
+     */
+    private Integer version;
+
+    /**
+     * 文件名 -> 内容哈希
+     */
+    private Map<String, String> manifest;
+
+    /**
+     * 相对上一个版本新增或内容变化的文件
+     */
+    private List<String> changedFiles;
+
+    /**
+     * 由哪个版本恢复而来，正常生成的版本为空
+     */
+    private Integer restoredFrom;
+
+    /**
+     * 创建时间（毫秒时间戳）
+     */
+    private Long createTime;
+}
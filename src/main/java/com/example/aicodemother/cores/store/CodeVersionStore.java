@@ -0,0 +1,243 @@
+package com.example.aicodemother.cores.store;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.example.aicodemother.constant.AppConstant;
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 应用代码版本存储
+ * 每次保存后内容有变化时记录一个版本（versions/目录名/版本号.json），版本只保存清单，
+ * 未变化的文件与上一版本共用同一个存储对象，一个版本实际只占用变化文件的空间。
+ * 恢复版本即按清单检出到应用目录，并记录为新版本，不需要再次调用模型。
+ * 被替换掉的文件只剩历史版本引用，记录版本时打包为 gzip 版本；每个应用只保留最近的若干个版本，
+ * 删除过版本后（至多每小时一次）清理不再被任何清单或版本引用的存储对象。
+ */
+@Slf4j
+public class CodeVersionStore {
+
+    /**
+     * 每个应用保留的版本数
+     */
+    public static final int DEFAULT_MAX_VERSIONS = 50;
+
+    private static final long GC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final CodeVersionStore INSTANCE = new CodeVersionStore(
+            Path.of(AppConstant.CODE_STORE_ROOT_DIR, "versions"), CodeFileStore.getInstance(), DEFAULT_MAX_VERSIONS);
+
+    private final Path versionDir;
+
+    private final CodeFileStore codeFileStore;
+
+    private final int maxVersions;
+
+    private long lastGcTime;
+
+    public CodeVersionStore(Path versionDir, CodeFileStore codeFileStore, int maxVersions) {
+        this.versionDir = versionDir;
+        this.codeFileStore = codeFileStore;
+        this.maxVersions = Math.max(maxVersions, 1);
+    }
+
+    public static CodeVersionStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录目录的新版本
+     *
+     * @param dir      应用目录
+     * @param manifest 目录当前的清单
+     * @return 新版本，内容与最新版本相同时不记录，返回 null
+     */
+    public CodeVersion record(Path dir, Map<String, String> manifest) {
+        return record(dir, manifest, null);
+    }
+
+    /**
+     * 应用的所有版本，最新的在前
+     */
+    public List<CodeVersion> list(Path dir) {
+        List<Integer> versions = listVersionNumbers(dir);
+        List<CodeVersion> result = new ArrayList<>(versions.size());
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            result.add(read(dir, versions.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * 获取指定版本
+     *
+     * @throws BusinessException 版本不存在
+     */
+    public CodeVersion get(Path dir, int version) {
+        if (!Files.isRegularFile(versionFile(dir, version))) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "版本不存在");
+        }
+        return read(dir, version);
+    }
+
+    /**
+     * 读取版本的文件内容
+     *
+     * @return 文件名 -> 文件内容
+     */
+    public Map<String, String> readFiles(CodeVersion codeVersion) {
+        Map<String, String> files = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> entry : codeVersion.getManifest().entrySet()) {
+                try (InputStream in = codeFileStore.openBlob(entry.getValue())) {
+                    files.put(entry.getKey(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取版本文件失败：" + e.getMessage());
+        }
+        return files;
+    }
+
+    /**
+     * 将应用目录恢复到指定版本，恢复结果记录为新版本
+     *
+     * @return 恢复后的版本，与当前最新版本内容相同时为最新版本
+     */
+    public CodeVersion restore(Path dir, int version) {
+        CodeVersion target = get(dir, version);
+        codeFileStore.checkout(target.getManifest(), dir);
+        CodeVersion restored = record(dir, target.getManifest(), version);
+        return restored != null ? restored : list(dir).get(0);
+    }
+
+    private synchronized CodeVersion record(Path dir, Map<String, String> manifest, Integer restoredFrom) {
+        List<Integer> versions = listVersionNumbers(dir);
+        Map<String, String> previous = Map.of();
+        if (!versions.isEmpty()) {
+            previous = read(dir, versions.get(versions.size() - 1)).getManifest();
+            if (previous.equals(manifest)) {
+                return null;
+            }
+        }
+        CodeVersion codeVersion = new CodeVersion();
+        codeVersion.setVersion(versions.isEmpty() ? 1 : versions.get(versions.size() - 1) + 1);
+        codeVersion.setManifest(manifest);
+        codeVersion.setChangedFiles(CodeFileStore.changedFiles(previous, manifest));
+        codeVersion.setRestoredFrom(restoredFrom);
+        codeVersion.setCreateTime(System.currentTimeMillis());
+        Path versionFile = versionFile(dir, codeVersion.getVersion());
+        Path tempFile = versionFile.resolveSibling(StrUtil.format(".{}.{}.tmp", versionFile.getFileName(), IdUtil.getSnowflakeNextIdStr()));
+        try {
+            Files.createDirectories(versionFile.getParent());
+            Files.writeString(tempFile, JSONUtil.toJsonStr(codeVersion), StandardCharsets.UTF_8);
+            CodeFileStore.moveAtomically(tempFile, versionFile);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "记录版本失败：" + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+            }
+        }
+        Set<String> replaced = new HashSet<>(previous.values());
+        replaced.removeAll(manifest.values());
+        codeFileStore.pack(replaced);
+        prune(dir);
+        return codeVersion;
+    }
+
+    /**
+     * 删除超出保留数的最早版本
+     */
+    private void prune(Path dir) {
+        List<Integer> versions = listVersionNumbers(dir);
+        if (versions.size() <= maxVersions) {
+            return;
+        }
+        try {
+            for (Integer version : versions.subList(0, versions.size() - maxVersions)) {
+                Files.deleteIfExists(versionFile(dir, version));
+            }
+        } catch (IOException e) {
+            log.warn("删除历史版本失败：{}", dir, e);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastGcTime >= GC_INTERVAL_MILLIS) {
+            lastGcTime = now;
+            try {
+                gc();
+            } catch (IOException | RuntimeException e) {
+                log.warn("清理代码存储失败", e);
+            }
+        }
+    }
+
+    /**
+     * 清理不再被任何目录清单或版本引用的存储对象
+     */
+    private void gc() throws IOException {
+        Set<String> referenced = codeFileStore.referencedHashes();
+        if (Files.isDirectory(versionDir)) {
+            try (Stream<Path> files = Files.walk(versionDir, 2)) {
+                for (Path file : files.filter(CodeFileStore::isJsonFile).toList()) {
+                    referenced.addAll(JSONUtil.toBean(Files.readString(file, StandardCharsets.UTF_8), CodeVersion.class)
+                            .getManifest().values());
+                }
+            }
+        }
+        int deleted = codeFileStore.gc(referenced);
+        log.info("清理代码存储完成，删除 {} 个文件", deleted);
+    }
+
+    private CodeVersion read(Path dir, int version) {
+        try {
+            return JSONUtil.toBean(Files.readString(versionFile(dir, version), StandardCharsets.UTF_8), CodeVersion.class);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取版本失败：" + e.getMessage());
+        }
+    }
+
+    private List<Integer> listVersionNumbers(Path dir) {
+        Path appVersionDir = appVersionDir(dir);
+        if (!Files.isDirectory(appVersionDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(appVersionDir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.endsWith(".json") && !fileName.startsWith("."))
+                    .map(fileName -> Integer.valueOf(StrUtil.removeSuffix(fileName, ".json")))
+                    .sorted(Comparator.naturalOrder())
+                    .toList();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取版本列表失败：" + e.getMessage());
+        }
+    }
+
+    private Path appVersionDir(Path dir) {
+        return versionDir.resolve(Objects.requireNonNull(dir.toAbsolutePath().normalize().getFileName()).toString());
+    }
+
+    private Path versionFile(Path dir, int version) {
+        return appVersionDir(dir).resolve(version + ".json");
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.aicodemother.cores.stream;
+
+import java.util.List;
+
+/**
+ * 环形缓冲区溢出片段的存储
+ */
+public interface ChunkSpillStore {
+
+    /**
+     * 追加溢出的片段，片段序号连续
+     *
+     * @param generationId 生成 ID
+     * @param startSeq     第一个片段的序号
+     * @param chunks       片段
+     */
+    void append(String generationId, long startSeq, List<String> chunks);
+
+    /**
+     * 读取 [fromSeq, toSeq) 范围内的片段
+     *
+     * @return 片段，数据已过期时返回的数量不足
+     */
+    List<String> load(String generationId, long fromSeq, long toSeq);
+
+    /**
+     * 生成结束后只保留一段时间
+     */
+    void expire(String generationId);
+}
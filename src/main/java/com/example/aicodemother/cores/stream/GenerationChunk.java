@@ -0,0 +1,22 @@
+package com.example.aicodemother.cores.stream;
+
+import lombok.Getter;
+
+/**
+ * 带序号的生成片段，序号从 0 开始，在一次生成内连续递增，用作 SSE 事件 id 的一部分
+ */
+@Getter
+public class GenerationChunk {
+
+    private final String generationId;
+
+    private final long seq;
+
+    private final String text;
+
+    public GenerationChunk(String generationId, long seq, String text) {
+        this.generationId = generationId;
+        this.seq = seq;
+        this.text = text;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.aicodemother.cores.stream;
+
+import java.util.List;
+
+/**
+ * 生成过程回调，供接口层推送排队、生成开始与文件保存事件
+ */
+public interface GenerationListener {
+
+    /**
+     * 排队位置变化
+     *
+     * @param position 排队位置（从 1 开始），获得生成名额时为 0
+     */
+    default void onQueuePosition(int position) {
+    }
+
+    /**
+     * 生成流已创建，可用该 ID 断线续传
+     *
+     * @param generationId 生成 ID
+     */
+    default void onStart(String generationId) {
+    }
+
+    /**
+     * 生成的代码已保存
+     *
+     * @param changedFiles 新增或内容变化的文件，内容与上次相同的文件不会重写
+     */
+    default void onFilesSaved(List<String> changedFiles) {
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.aicodemother.cores.stream;
+
+import com.example.aicodemother.exception.BusinessException;
+import com.example.aicodemother.exception.ErrorCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可续传的生成流
+ * 上游模型流只订阅一次，输出按序号保存在有界环形缓冲区中，缓冲区满时最早的一批片段溢出到外部存储；
+ * 溢出在单独的线程上按顺序写入，写入完成前片段保留在内存中，上游线程不等待外部存储。
+ * 订阅者可以从任意序号开始订阅：先回放溢出片段、待写入片段与缓冲区中的片段，再接收实时输出。
+ * 所有订阅者断开后上游继续运行一段宽限时间，期间重新连接即可续传，超时仍无订阅者才取消模型调用。
+ */
+@Slf4j
+public class GenerationStream {
+
+    @Getter
+    private final String generationId;
+
+    @Getter
+    private final Long appId;
+
+    @Getter
+    private final Long userId;
+
+    private final Flux<String> source;
+
+    private final ChunkSpillStore spillStore;
+
+    private final int ringCapacity;
+
+    private final int spillBatch;
+
+    private final Duration resumeGrace;
+
+    private final Scheduler timer;
+
+    /**
+     * 写入溢出片段的线程池
+     */
+    private final Executor spillExecutor;
+
+    /**
+     * 生成结束时回调
+     */
+    private final Runnable onTerminate;
+
+    private final ArrayDeque<String> ring;
+
+    /**
+     * 缓冲区中最早片段的序号，更早的片段已溢出
+     */
+    private long ringStartSeq;
+
+    private long nextSeq;
+
+    /**
+     * 已溢出、尚未写入外部存储的片段，按序号排列，紧接在缓冲区之前
+     */
+    private final ArrayDeque<List<String>> pendingSpills = new ArrayDeque<>();
+
+    private int pendingSpillCount;
+
+    /**
+     * 是否有写入任务在运行，同一时间只有一个，保证片段按序追加
+     */
+    private boolean spilling;
+
+    private boolean spillFailed;
+
+    /**
+     * 生成结束时仍有片段在写入，写入完成后再执行结束回调
+     */
+    private boolean terminateAfterSpill;
+
+    private final List<Sinks.Many<GenerationChunk>> subscribers = new ArrayList<>();
+
+    private boolean started;
+
+    private boolean terminated;
+
+    private Throwable error;
+
+    private Disposable upstream;
+
+    private Disposable graceTimer;
+
+    GenerationStream(String generationId, Long appId, Long userId, Flux<String> source, ChunkSpillStore spillStore,
+                     int ringCapacity, int spillBatch, Duration resumeGrace, Scheduler timer, Executor spillExecutor,
+                     Runnable onTerminate) {
+        this.generationId = generationId;
+        this.appId = appId;
+        this.userId = userId;
+        this.source = source;
+        this.spillStore = spillStore;
+        this.ringCapacity = Math.max(ringCapacity, 1);
+        this.spillBatch = Math.max(Math.min(spillBatch, this.ringCapacity), 1);
+        this.resumeGrace = resumeGrace;
+        this.timer = timer;
+        this.spillExecutor = spillExecutor;
+        this.onTerminate = onTerminate;
+        this.ring = new ArrayDeque<>(this.ringCapacity);
+    }
+
+    /**
+     * 订阅生成流，首个订阅者到来时才订阅上游
+     *
+     * @param lastSeq 已收到的最后一个片段序号，从头订阅时为 -1
+     * @return lastSeq 之后的片段
+     */
+    public Flux<GenerationChunk> subscribe(long lastSeq) {
+        return Flux.defer(() -> {
+            long fromSeq = lastSeq + 1;
+            long spillToSeq;
+            List<GenerationChunk> history = new ArrayList<>();
+            Sinks.Many<GenerationChunk> sink = null;
+            boolean connect = false;
+            Flux<GenerationChunk> tail;
+            synchronized (this) {
+                if (fromSeq < 0 || fromSeq > nextSeq) {
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "续传位置无效");
+                }
+                if (fromSeq < ringStartSeq && spillFailed) {
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "续传数据已丢失，请重新生成");
+                }
+                // 外部存储只读取已写入完成的部分，待写入的片段从内存回放
+                spillToSeq = ringStartSeq - pendingSpillCount;
+                long seq = spillToSeq;
+                for (List<String> pending : pendingSpills) {
+                    for (String text : pending) {
+                        if (seq >= fromSeq) {
+                            history.add(new GenerationChunk(generationId, seq, text));
+                        }
+                        seq++;
+                    }
+                }
+                for (String text : ring) {
+                    if (seq >= fromSeq) {
+                        history.add(new GenerationChunk(generationId, seq, text));
+                    }
+                    seq++;
+                }
+                if (terminated) {
+                    tail = error == null ? Flux.empty() : Flux.error(error);
+                } else {
+                    sink = Sinks.many().unicast().onBackpressureBuffer();
+                    subscribers.add(sink);
+                    tail = sink.asFlux();
+                    connect = !started;
+                    started = true;
+                    if (graceTimer != null) {
+                        graceTimer.dispose();
+                        graceTimer = null;
+                    }
+                }
+            }
+            Flux<GenerationChunk> spilled = fromSeq < spillToSeq
+                    ? Flux.defer(() -> Flux.fromIterable(loadSpilled(fromSeq, spillToSeq)))
+                    : Flux.empty();
+            if (connect) {
+                connect();
+            }
+            Flux<GenerationChunk> result = Flux.concat(spilled, Flux.fromIterable(history), tail);
+            if (sink != null) {
+                Sinks.Many<GenerationChunk> subscriber = sink;
+                result = result.doFinally(signal -> unsubscribe(subscriber));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return 已产生的片段数
+     */
+    public synchronized long getNextSeq() {
+        return nextSeq;
+    }
+
+    private void connect() {
+        Disposable disposable = source.subscribe(this::onNext, this::onError, this::onComplete);
+        synchronized (this) {
+            upstream = disposable;
+        }
+    }
+
+    private List<GenerationChunk> loadSpilled(long fromSeq, long toSeq) {
+        List<String> texts = spillStore.load(generationId, fromSeq, toSeq);
+        if (texts.size() != toSeq - fromSeq) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "续传数据已过期，请重新生成");
+        }
+        List<GenerationChunk> chunks = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            chunks.add(new GenerationChunk(generationId, fromSeq + i, texts.get(i)));
+        }
+        return chunks;
+    }
+
+    /**
+     * 写入缓冲区与分发在同一把锁内完成，保证新订阅者的回放与实时输出之间不丢不重
+     */
+    private synchronized void onNext(String text) {
+        if (ring.size() == ringCapacity) {
+            spill();
+        }
+        ring.addLast(text);
+        GenerationChunk chunk = new GenerationChunk(generationId, nextSeq++, text);
+        for (Sinks.Many<GenerationChunk> sink : subscribers) {
+            sink.tryEmitNext(chunk);
+        }
+    }
+
+    /**
+     * 在锁内调用，只把片段移入待写入队列，写入外部存储由 {@link #drainSpills()} 在锁外完成
+     */
+    private void spill() {
+        List<String> evicted = new ArrayList<>(spillBatch);
+        for (int i = 0; i < spillBatch; i++) {
+            evicted.add(ring.pollFirst());
+        }
+        ringStartSeq += evicted.size();
+        if (spillFailed) {
+            return;
+        }
+        if (pendingSpillCount >= ringCapacity) {
+            // 外部存储跟不上时不再占用内存，只是更早的片段无法续传
+            failSpill(null);
+            return;
+        }
+        pendingSpills.addLast(evicted);
+        pendingSpillCount += evicted.size();
+        if (!spilling) {
+            spilling = true;
+            try {
+                spillExecutor.execute(this::drainSpills);
+            } catch (RejectedExecutionException e) {
+                spilling = false;
+                failSpill(e);
+            }
+        }
+    }
+
+    /**
+     * 按顺序写入待写入的片段，直到队列为空
+     */
+    private void drainSpills() {
+        while (true) {
+            List<String> chunks;
+            long startSeq;
+            synchronized (this) {
+                chunks = pendingSpills.peekFirst();
+                if (chunks == null) {
+                    spilling = false;
+                    if (!terminateAfterSpill) {
+                        return;
+                    }
+                    terminateAfterSpill = false;
+                    break;
+                }
+                startSeq = ringStartSeq - pendingSpillCount;
+            }
+            try {
+                spillStore.append(generationId, startSeq, chunks);
+            } catch (Exception e) {
+                synchronized (this) {
+                    failSpill(e);
+                }
+                continue;
+            }
+            synchronized (this) {
+                // 写入期间可能已放弃溢出并清空队列
+                if (pendingSpills.peekFirst() == chunks) {
+                    pendingSpills.pollFirst();
+                    pendingSpillCount -= chunks.size();
+                }
+            }
+        }
+        onTerminate.run();
+    }
+
+    /**
+     * 溢出失败不影响生成，只是更早的片段无法续传
+     */
+    private void failSpill(Exception e) {
+        if (!spillFailed) {
+            log.warn("生成片段溢出失败，generationId：{}", generationId, e);
+        }
+        spillFailed = true;
+        pendingSpills.clear();
+        pendingSpillCount = 0;
+    }
+
+    private void onComplete() {
+        terminate(null);
+    }
+
+    private void onError(Throwable throwable) {
+        terminate(throwable);
+    }
+
+    private void terminate(Throwable throwable) {
+        List<Sinks.Many<GenerationChunk>> toNotify;
+        boolean waitForSpill;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            error = throwable;
+            toNotify = new ArrayList<>(subscribers);
+            subscribers.clear();
+            waitForSpill = spilling;
+            terminateAfterSpill = spilling;
+            if (graceTimer != null) {
+                graceTimer.dispose();
+                graceTimer = null;
+            }
+        }
+        for (Sinks.Many<GenerationChunk> sink : toNotify) {
+            if (throwable == null) {
+                sink.tryEmitComplete();
+            } else {
+                sink.tryEmitError(throwable);
+            }
+        }
+        if (!waitForSpill) {
+            onTerminate.run();
+        }
+    }
+
+    private synchronized void unsubscribe(Sinks.Many<GenerationChunk> sink) {
+        if (!subscribers.remove(sink) || terminated || !subscribers.isEmpty()) {
+            return;
+        }
+        log.info("生成流已无订阅者，{} 秒内可续传，generationId：{}", resumeGrace.toSeconds(), generationId);
+        graceTimer = timer.schedule(this::cancelIfIdle, resumeGrace.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelIfIdle() {
+        Disposable toCancel;
+        synchronized (this) {
+            if (terminated || !subscribers.isEmpty()) {
+                return;
+            }
+            graceTimer = null;
+            toCancel = upstream;
+        }
+        log.info("生成流宽限期内无人续传，取消生成，generationId：{}", generationId);
+        if (toCancel != null) {
+            toCancel.dispose();
+        }
+        // 取消不会产生终止信号，由这里结束生成流
+        terminate(new BusinessException(ErrorCode.OPERATION_ERROR, "生成已取消"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.aicodemother.cores.stream;
+
+import cn.hutool.core.util.IdUtil;
+import com.example.aicodemother.config.GenerationStreamConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可续传生成流注册表，生成结束后保留一段时间供断线续传
+ */
+@Slf4j
+@Component
+public class GenerationStreamRegistry {
+
+    private final Map<String, GenerationStream> streams = new ConcurrentHashMap<>();
+
+    @Resource
+    private GenerationStreamConfig generationStreamConfig;
+
+    @Resource
+    private ChunkSpillStore chunkSpillStore;
+
+    /**
+     * 创建生成流，首次订阅时才订阅上游
+     *
+     * @param appId  应用 ID
+     * @param userId 发起生成的用户 ID
+     * @param source 模型输出
+     * @return 生成流
+     */
+    public GenerationStream create(Long appId, Long userId, Flux<String> source) {
+        String generationId = IdUtil.getSnowflakeNextIdStr();
+        GenerationStream stream = new GenerationStream(generationId, appId, userId, source, chunkSpillStore,
+                generationStreamConfig.getRingCapacity(), generationStreamConfig.getSpillBatch(),
+                generationStreamConfig.getResumeGrace(), Schedulers.parallel(),
+                runnable -> Schedulers.boundedElastic().schedule(runnable), () -> scheduleRemoval(generationId));
+        streams.put(generationId, stream);
+        return stream;
+    }
+
+    /**
+     * @param generationId 生成 ID
+     * @return 生成流，不存在或已过期时返回 null
+     */
+    public GenerationStream get(String generationId) {
+        return streams.get(generationId);
+    }
+
+    private void scheduleRemoval(String generationId) {
+        try {
+            chunkSpillStore.expire(generationId);
+        } catch (Exception e) {
+            log.warn("设置溢出片段过期时间失败，generationId：{}", generationId, e);
+        }
+        Schedulers.parallel().schedule(() -> streams.remove(generationId),
+                generationStreamConfig.getRetention().toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
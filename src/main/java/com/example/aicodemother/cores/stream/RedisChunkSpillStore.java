@@ -0,0 +1,42 @@
+package com.example.aicodemother.cores.stream;
+
+import com.example.aicodemother.config.GenerationStreamConfig;
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 基于 Redis 列表的溢出片段存储，列表下标即片段序号
+ */
+@Component
+public class RedisChunkSpillStore implements ChunkSpillStore {
+
+    private static final String KEY_PREFIX = "gen:stream:";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private GenerationStreamConfig generationStreamConfig;
+
+    @Override
+    public void append(String generationId, long startSeq, List<String> chunks) {
+        String key = KEY_PREFIX + generationId;
+        stringRedisTemplate.opsForList().rightPushAll(key, chunks);
+        // 生成进行中也设置过期时间，避免进程退出后残留
+        stringRedisTemplate.expire(key, generationStreamConfig.getSpillTtl());
+    }
+
+    @Override
+    public List<String> load(String generationId, long fromSeq, long toSeq) {
+        List<String> chunks = stringRedisTemplate.opsForList().range(KEY_PREFIX + generationId, fromSeq, toSeq - 1);
+        return chunks == null ? List.of() : chunks;
+    }
+
+    @Override
+    public void expire(String generationId) {
+        stringRedisTemplate.expire(KEY_PREFIX + generationId, generationStreamConfig.getRetention());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.aicodemother.model.dto.app;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class AppVersionRestoreRequest implements Serializable {
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 要恢复的版本号
+     */
+    private Integer version;
+
+    private static final long serialVersionUID = 1L;
+}
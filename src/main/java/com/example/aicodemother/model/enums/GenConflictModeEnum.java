@@ -0,0 +1,41 @@
+package com.example.aicodemother.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 同一应用已有生成进行中时，新请求的处理方式
+ */
+@Getter
+public enum GenConflictModeEnum {
+
+    JOIN("相同提示词加入进行中的生成，否则排队", "join"),
+    QUEUE("排队等待", "queue");
+
+    private final String text;
+
+    private final String value;
+
+    GenConflictModeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static GenConflictModeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (GenConflictModeEnum anEnum : GenConflictModeEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -8,7 +8,8 @@ public enum MessageTypeEnum {
 
     USER("用户消息", "user"),
     AI("AI 消息", "ai"),
-    ERROR("错误消息", "error");
+    ERROR("错误消息", "error"),
+    CANCEL("已取消的 AI 消息", "cancel");
 
     private final String text;
 
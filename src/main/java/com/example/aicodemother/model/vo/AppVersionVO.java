@@ -0,0 +1,38 @@
+package com.example.aicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class AppVersionVO implements Serializable {
+
+    private Integer version;
+
+    /**
+     * 该版本包含的文件
+     */
+    private List<String> fileNames;
+
+    /**
+     * 相对上一个版本新增或内容变化的文件
+     */
+    private List<String> changedFiles;
+
+    /**
+     * 由哪个版本恢复而来
+     */
+    private Integer restoredFrom;
+
+    /**
+     * 文件内容（文件名 -> 内容），仅查询单个版本时返回
+     */
+    private Map<String, String> files;
+
+    private LocalDateTime createTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -1,11 +1,15 @@
 package com.example.aicodemother.service;
 
+import com.example.aicodemother.cores.stream.GenerationChunk;
+import com.example.aicodemother.cores.stream.GenerationListener;
+import com.example.aicodemother.cores.stream.GenerationStream;
 import com.example.aicodemother.model.dto.app.AppFeaturedQueryRequest;
 import com.example.aicodemother.model.dto.app.AppMyQueryRequest;
 import com.example.aicodemother.model.dto.app.AppQueryRequest;
 import com.example.aicodemother.model.entity.App;
 import com.example.aicodemother.model.entity.User;
 import com.example.aicodemother.model.vo.AppVO;
+import com.example.aicodemother.model.vo.AppVersionVO;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import reactor.core.publisher.Flux;
@@ -30,6 +34,50 @@ public interface AppService extends IService<App> {
     boolean deleteAppAndHistory(Long appId);
 
     Flux<String> chatToGenCode(String message, User loginUser, Long appId);
+
+    /**
+     * 对话生成代码
+     *
+     * @param listener 排队位置与生成开始回调
+     * @return 带序号的生成流
+     */
+    Flux<GenerationChunk> chatToGenCode(String message, User loginUser, Long appId, GenerationListener listener);
+
+    /**
+     * 断线续传，从指定序号之后继续接收进行中或刚结束的生成，不会重新调用模型
+     *
+     * @param generationId 生成 ID
+     * @param lastSeq      已收到的最后一个片段序号
+     * @return 带序号的生成流
+     */
+    Flux<GenerationChunk> resumeGenCode(Long appId, String generationId, long lastSeq, User loginUser);
+
+    /**
+     * 获取应用进行中的生成，供应用创建者在其他页面或设备上观看
+     *
+     * @return 进行中的生成流
+     */
+    GenerationStream getRunningGeneration(Long appId, User loginUser);
+
+    /**
+     * 应用代码的版本列表，每次生成或修改后内容有变化时记录一个版本
+     *
+     * @return 版本列表，最新的在前
+     */
+    List<AppVersionVO> listAppVersions(Long appId, User loginUser);
+
+    /**
+     * 获取应用代码的指定版本，包含文件内容
+     */
+    AppVersionVO getAppVersion(Long appId, Integer version, User loginUser);
+
+    /**
+     * 将应用代码恢复到指定版本，恢复结果记录为新版本，不调用模型
+     *
+     * @return 恢复后的版本
+     */
+    AppVersionVO restoreAppVersion(Long appId, Integer version, User loginUser);
+
     @Deprecated
     QueryWrapper getMyAppQueryWrapper(AppMyQueryRequest appMyQueryRequest, Long userId);
 
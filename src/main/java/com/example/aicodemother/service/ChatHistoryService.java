@@ -6,13 +6,15 @@ import com.example.aicodemother.model.entity.User;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
 
 public interface ChatHistoryService extends IService<ChatHistory> {
 
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
+
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount, boolean skipLatest);
 
     Page<ChatHistory> pageChatHistory(Long appId, int pageSize,
                                       LocalDateTime lastCreateTime,
@@ -2,11 +2,26 @@ package com.example.aicodemother.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
+import com.example.aicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.example.aicodemother.config.GenerationBufferConfig;
 import com.example.aicodemother.constant.AppConstant;
+import com.example.aicodemother.constant.UserConstant;
 import com.example.aicodemother.cores.AiCodeGeneratorFacade;
+import com.example.aicodemother.cores.buffer.GenerationChunkBuffer;
+import com.example.aicodemother.cores.completion.GenerationCompletionStage;
+import com.example.aicodemother.cores.metrics.GenerationCancelMetrics;
+import com.example.aicodemother.cores.scheduler.GenerationScheduler;
+import com.example.aicodemother.cores.session.GenerationSession;
+import com.example.aicodemother.cores.session.GenerationSessionManager;
+import com.example.aicodemother.cores.stream.GenerationChunk;
+import com.example.aicodemother.cores.stream.GenerationListener;
+import com.example.aicodemother.cores.stream.GenerationStream;
+import com.example.aicodemother.cores.store.CodeFileStore;
+import com.example.aicodemother.cores.store.CodeVersion;
+import com.example.aicodemother.cores.store.CodeVersionStore;
+import com.example.aicodemother.cores.stream.GenerationStreamRegistry;
 import com.example.aicodemother.exception.BusinessException;
 import com.example.aicodemother.exception.ErrorCode;
 import com.example.aicodemother.exception.ThrowUtils;
@@ -20,6 +35,7 @@ import com.example.aicodemother.model.entity.User;
 import com.example.aicodemother.model.enums.CodeGenTypeEnum;
 import com.example.aicodemother.model.enums.MessageTypeEnum;
 import com.example.aicodemother.model.vo.AppVO;
+import com.example.aicodemother.model.vo.AppVersionVO;
 import com.example.aicodemother.service.AppService;
 import com.example.aicodemother.service.ChatHistoryService;
 import com.example.aicodemother.service.UserService;
@@ -30,13 +46,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 
@@ -54,9 +75,30 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Autowired
     private AiCodeGeneratorFacade aiCodeGeneratorFacade;
 
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
     @Resource
     private ChatHistoryService chatHistoryService;
 
+    @Resource
+    private GenerationCompletionStage generationCompletionStage;
+
+    @Resource
+    private GenerationBufferConfig generationBufferConfig;
+
+    @Resource
+    private GenerationSessionManager generationSessionManager;
+
+    @Resource
+    private GenerationScheduler generationScheduler;
+
+    @Resource
+    private GenerationCancelMetrics generationCancelMetrics;
+
+    @Resource
+    private GenerationStreamRegistry generationStreamRegistry;
+
     @Override
     public String deployApp(Long appId, User loginUser) {
         // 1. 参数校验
@@ -84,10 +126,11 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (!sourceDir.exists() || !sourceDir.isDirectory()) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "应用代码不存在，请先生成代码");
         }
-        // 7. 复制文件到部署目录
+        // 7. 按生成目录的清单检出到部署目录，文件链接到已存储的内容，不重复复制
         String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
         try {
-            FileUtil.copyContent(sourceDir, new File(deployDirPath), true);
+            CodeFileStore codeFileStore = CodeFileStore.getInstance();
+            codeFileStore.checkout(codeFileStore.getManifest(sourceDir.toPath()), Path.of(deployDirPath));
         } catch (Exception e) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败：" + e.getMessage());
         }
@@ -179,6 +222,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
     @Override
     public Flux<String> chatToGenCode(String message, User loginUser, Long appId) {
+        return chatToGenCode(message, loginUser, appId, new GenerationListener() {
+        }).map(GenerationChunk::getText);
+    }
+
+    @Override
+    public Flux<GenerationChunk> chatToGenCode(String message, User loginUser, Long appId, GenerationListener listener) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID异常");
         ThrowUtils.throwIf(message== null || StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "请求参数为空");
         ThrowUtils.throwIf(loginUser == null || loginUser.getId() == null || loginUser.getId() <= 0, ErrorCode.NOT_LOGIN_ERROR, "用户登陆状态异常");
@@ -190,34 +239,149 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         ThrowUtils.throwIf(!loginUser.getId().equals(appUserId), ErrorCode.NO_AUTH_ERROR, "用户权限异常");
         CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
         ThrowUtils.throwIf(codeGenType == null, ErrorCode.PARAMS_ERROR, "应用生成类型异常");
+        // 管理员和精选应用走优先通道
+        boolean priority = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole())
+                || AppConstant.GOOD_APP_PRIORITY.equals(app.getPriority());
+        // 同一应用同一时刻只进行一次生成，轮到该应用后再申请全局生成名额，获得名额时才记录用户消息并调用模型
+        return generationSessionManager.execute(appId, loginUser.getId(), message, listener,
+                () -> generationScheduler.schedule(loginUser.getId(), priority,
+                        () -> generateWithHistory(message, loginUser, appId, codeGenType, listener), listener::onQueuePosition));
+    }
+
+    @Override
+    public Flux<GenerationChunk> resumeGenCode(Long appId, String generationId, long lastSeq, User loginUser) {
+        ThrowUtils.throwIf(StrUtil.isBlank(generationId), ErrorCode.PARAMS_ERROR, "生成 ID 不能为空");
+        ThrowUtils.throwIf(loginUser == null || loginUser.getId() == null, ErrorCode.NOT_LOGIN_ERROR, "用户登陆状态异常");
+        GenerationStream stream = generationStreamRegistry.get(generationId);
+        ThrowUtils.throwIf(stream == null, ErrorCode.NOT_FOUND_ERROR, "生成已结束或已过期");
+        ThrowUtils.throwIf(!stream.getAppId().equals(appId), ErrorCode.PARAMS_ERROR, "生成与应用不匹配");
+        ThrowUtils.throwIf(!stream.getUserId().equals(loginUser.getId())
+                && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole()), ErrorCode.NO_AUTH_ERROR, "用户权限异常");
+        return stream.subscribe(lastSeq);
+    }
+
+    @Override
+    public GenerationStream getRunningGeneration(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID异常");
+        ThrowUtils.throwIf(loginUser == null || loginUser.getId() == null, ErrorCode.NOT_LOGIN_ERROR, "用户登陆状态异常");
+        App app = getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!loginUser.getId().equals(app.getUserId())
+                && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole()), ErrorCode.NO_AUTH_ERROR, "用户权限异常");
+        GenerationSession session = generationSessionManager.getSession(appId);
+        GenerationStream stream = session == null ? null : session.getStream();
+        ThrowUtils.throwIf(stream == null, ErrorCode.NOT_FOUND_ERROR, "该应用当前没有进行中的生成");
+        return stream;
+    }
+
+    @Override
+    public List<AppVersionVO> listAppVersions(Long appId, User loginUser) {
+        App app = getAppForVersion(appId, loginUser);
+        return CodeVersionStore.getInstance().list(getAppCodeDir(app)).stream()
+                .map(this::getAppVersionVO)
+                .toList();
+    }
+
+    @Override
+    public AppVersionVO getAppVersion(Long appId, Integer version, User loginUser) {
+        ThrowUtils.throwIf(version == null || version <= 0, ErrorCode.PARAMS_ERROR, "版本号异常");
+        App app = getAppForVersion(appId, loginUser);
+        CodeVersionStore codeVersionStore = CodeVersionStore.getInstance();
+        CodeVersion codeVersion = codeVersionStore.get(getAppCodeDir(app), version);
+        AppVersionVO appVersionVO = getAppVersionVO(codeVersion);
+        appVersionVO.setFiles(codeVersionStore.readFiles(codeVersion));
+        return appVersionVO;
+    }
+
+    @Override
+    public AppVersionVO restoreAppVersion(Long appId, Integer version, User loginUser) {
+        ThrowUtils.throwIf(version == null || version <= 0, ErrorCode.PARAMS_ERROR, "版本号异常");
+        App app = getAppForVersion(appId, loginUser);
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "无权限恢复该应用");
+        // 生成结束时会覆盖应用目录，恢复与生成按应用互斥：生成过程中不允许恢复，恢复期间到达的生成排队等待
+        CodeVersion codeVersion = generationSessionManager.executeExclusive(appId, () -> {
+            CodeVersion restored = CodeVersionStore.getInstance().restore(getAppCodeDir(app), version);
+            // 对话记忆中的代码仍是恢复前的版本，丢弃后下次对话按当前文件重新加载
+            aiCodeGeneratorServiceFactory.evictChatMemory(appId);
+            return restored;
+        });
+        return getAppVersionVO(codeVersion);
+    }
+
+    /**
+     * 查询应用并校验版本查看权限，仅本人和管理员可以查看
+     */
+    private App getAppForVersion(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID异常");
+        ThrowUtils.throwIf(loginUser == null || loginUser.getId() == null, ErrorCode.NOT_LOGIN_ERROR, "用户登陆状态异常");
+        App app = getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!loginUser.getId().equals(app.getUserId())
+                && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole()), ErrorCode.NO_AUTH_ERROR, "用户权限异常");
+        return app;
+    }
+
+    private static Path getAppCodeDir(App app) {
+        return Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR, app.getCodeGenType() + "_" + app.getId());
+    }
+
+    private AppVersionVO getAppVersionVO(CodeVersion codeVersion) {
+        AppVersionVO appVersionVO = new AppVersionVO();
+        appVersionVO.setVersion(codeVersion.getVersion());
+        appVersionVO.setFileNames(new ArrayList<>(codeVersion.getManifest().keySet()));
+        appVersionVO.setChangedFiles(codeVersion.getChangedFiles());
+        appVersionVO.setRestoredFrom(codeVersion.getRestoredFrom());
+        appVersionVO.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(codeVersion.getCreateTime()), ZoneId.systemDefault()));
+        return appVersionVO;
+    }
+
+    /**
+     * 记录用户消息，生成代码，并在结束后记录 AI 消息或错误消息
+     */
+    private Flux<String> generateWithHistory(String message, User loginUser, Long appId, CodeGenTypeEnum codeGenType,
+                                             GenerationListener listener) {
         ChatHistory userHistory = new ChatHistory();
         userHistory.setAppId(appId);
         userHistory.setUserId(loginUser.getId());
         userHistory.setMessage(message);
         userHistory.setMessageType(MessageTypeEnum.USER.getValue());
         chatHistoryService.save(userHistory);
-        StringBuilder aiContentBuilder = new StringBuilder();
-        Flux<String> resultFlux = aiCodeGeneratorFacade.generateAndSaveCodeStreaming(message, codeGenType, appId);
+        GenerationChunkBuffer chunkBuffer = new GenerationChunkBuffer(generationBufferConfig.getMaxChars());
+        Flux<String> resultFlux = aiCodeGeneratorFacade.generateAndSaveCodeStreaming(message, codeGenType, appId, chunkBuffer, listener);
+        // 模型输出结束后客户端断开时，AI 消息仍需入库，保证只入库一次
+        AtomicBoolean aiHistorySaved = new AtomicBoolean();
+        Runnable saveAiHistory = () -> {
+            if (!aiHistorySaved.compareAndSet(false, true)) {
+                return;
+            }
+            generationCancelMetrics.recordCompleted(codeGenType, chunkBuffer.chunkCount());
+            saveHistory(appId, loginUser.getId(), userHistory.getId(), chunkBuffer.toString(), MessageTypeEnum.AI);
+        };
+        // 对话历史入库是阻塞操作，放到收尾线程池执行，不占用模型流的回调线程
         return resultFlux
-                .doOnNext(aiContentBuilder::append)
-                .doOnComplete(() -> {
-                    ChatHistory aiHistory = new ChatHistory();
-                    aiHistory.setAppId(appId);
-                    aiHistory.setUserId(loginUser.getId());
-                    aiHistory.setMessage(aiContentBuilder.toString());
-                    aiHistory.setMessageType(MessageTypeEnum.AI.getValue());
-                    aiHistory.setParentId(userHistory.getId());
-                    chatHistoryService.save(aiHistory);
+                .doOnCancel(() -> {
+                    if (chunkBuffer.isComplete()) {
+                        generationCompletionStage.submit("saveAiHistory", saveAiHistory);
+                        return;
+                    }
+                    // 模型输出未结束时客户端断开，模型调用已被取消，仅记录取消前的部分输出
+                    generationCancelMetrics.recordCancelled(codeGenType, chunkBuffer.chunkCount());
+                    generationCompletionStage.submit("saveCancelHistory", () -> saveHistory(appId, loginUser.getId(),
+                            userHistory.getId(), chunkBuffer.toString(), MessageTypeEnum.CANCEL));
                 })
-                .doOnError(e -> {
-                    ChatHistory errorHistory = new ChatHistory();
-                    errorHistory.setAppId(appId);
-                    errorHistory.setUserId(loginUser.getId());
-                    errorHistory.setMessage(e.getMessage());
-                    errorHistory.setMessageType(MessageTypeEnum.ERROR.getValue());
-                    errorHistory.setParentId(userHistory.getId());
-                    chatHistoryService.save(errorHistory);
-                });
+                .concatWith(generationCompletionStage.run("saveAiHistory", saveAiHistory).then(Mono.empty()))
+                .doOnError(e -> generationCompletionStage.submit("saveErrorHistory", () ->
+                        saveHistory(appId, loginUser.getId(), userHistory.getId(), e.getMessage(), MessageTypeEnum.ERROR)));
+    }
+
+    private void saveHistory(Long appId, Long userId, Long parentId, String message, MessageTypeEnum messageType) {
+        ChatHistory chatHistory = new ChatHistory();
+        chatHistory.setAppId(appId);
+        chatHistory.setUserId(userId);
+        chatHistory.setMessage(message);
+        chatHistory.setMessageType(messageType.getValue());
+        chatHistory.setParentId(parentId);
+        chatHistoryService.save(chatHistory);
     }
 
     @Override
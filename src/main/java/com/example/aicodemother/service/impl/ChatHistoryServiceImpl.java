@@ -2,6 +2,9 @@ package com.example.aicodemother.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import com.example.aicodemother.ai.memory.CodeMessageCompactor;
+import com.example.aicodemother.ai.memory.TokenBudgetChatMemory;
+import com.example.aicodemother.constant.AppConstant;
 import com.example.aicodemother.exception.BusinessException;
 import com.example.aicodemother.exception.ErrorCode;
 import com.example.aicodemother.exception.ThrowUtils;
@@ -18,14 +21,17 @@ import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 @Slf4j
 @Service
@@ -43,13 +49,22 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
  * @return 实际加载的消息数量，如果发生异常则返回0
  */
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
+        return loadChatHistoryToMemory(appId, chatMemory, maxCount, true);
+    }
+
+/**
+ * 加载聊天历史到内存中的方法
+ * @param skipLatest 是否跳过最新的一条消息（对话请求中刚保存的用户消息由本次调用写入记忆）；后台刷新时为 false
+ */
+    @Override
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount, boolean skipLatest) {
         try {
-            // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
+            // 直接构造查询条件，对话请求中起始点为 1 而不是 0，用于排除最新的用户消息
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)  // 设置应用ID过滤条件
                     .orderBy(ChatHistory::getCreateTime, false)  // 按创建时间倒序排列
-                    .limit(1, maxCount);  // 设置查询范围，从第1条开始，查询maxCount条记录
+                    .limit(skipLatest ? 1 : 0, maxCount);  // 设置查询范围，从第1（或0）条开始，查询maxCount条记录
             List<ChatHistory> historyList = this.list(queryWrapper);  // 执行查询获取历史记录列表
             if (CollUtil.isEmpty(historyList)) {  // 检查列表是否为空
                 return 0;
@@ -57,18 +72,33 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             // 反转列表，确保按时间正序（老的在前，新的在后）
             historyList = historyList.reversed();
             // 按时间顺序添加到记忆中
-            int loadedCount = 0;
-            // 先清理历史缓存，防止重复加载
-            chatMemory.clear();
+            List<ChatMessage> messages = new ArrayList<>(historyList.size());
+            int lastAiIndex = -1;
             for (ChatHistory history : historyList) {  // 遍历历史记录列表
                 if (MessageTypeEnum.USER.getValue().equals(history.getMessageType())) {  // 判断是否为用户消息
-                    chatMemory.add(UserMessage.from(history.getMessage()));  // 添加用户消息到记忆中
-                    loadedCount++;
+                    messages.add(UserMessage.from(history.getMessage()));
                 } else if (MessageTypeEnum.AI.getValue().equals(history.getMessageType())) {  // 判断是否为AI消息
-                    chatMemory.add(AiMessage.from(history.getMessage()));  // 添加AI消息到记忆中
-                    loadedCount++;
+                    // 旧版本代码只保留摘要
+                    lastAiIndex = messages.size();
+                    messages.add(AiMessage.from(CodeMessageCompactor.compact(history.getMessage())));
                 }
             }
+            // 最新版本代码以应用目录中已保存的文件为准，附在最后一条 AI 消息后，只注入一次
+            if (lastAiIndex >= 0) {
+                String appFiles = renderAppFiles(appId);
+                if (appFiles != null) {
+                    AiMessage lastAiMessage = (AiMessage) messages.get(lastAiIndex);
+                    messages.set(lastAiIndex, AiMessage.from(lastAiMessage.text() + "\n\n" + appFiles));
+                }
+            }
+            // 整体替换历史缓存，防止重复加载；按 token 预算裁剪的记忆只写入一次 Redis
+            if (chatMemory instanceof TokenBudgetChatMemory tokenBudgetChatMemory) {
+                tokenBudgetChatMemory.replaceMessages(messages);
+            } else {
+                chatMemory.clear();
+                messages.forEach(chatMemory::add);
+            }
+            int loadedCount = messages.size();
             log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);  // 记录成功加载日志
             return loadedCount;
         } catch (Exception e) {  // 捕获所有异常
@@ -79,6 +109,20 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     }
 
 
+    /**
+     * 读取应用已保存的文件
+     *
+     * @return 文件内容，应用不存在或尚未生成时返回 null
+     */
+    private String renderAppFiles(Long appId) {
+        App app = appService.getById(appId);
+        if (app == null || StrUtil.isBlank(app.getCodeGenType())) {
+            return null;
+        }
+        String appDirName = StrUtil.format("{}_{}", app.getCodeGenType(), appId);
+        return CodeMessageCompactor.renderAppFiles(Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR, appDirName));
+    }
+
     @Override
     public Page<ChatHistory> pageChatHistory(Long appId, int pageSize,
                                              LocalDateTime lastCreateTime,
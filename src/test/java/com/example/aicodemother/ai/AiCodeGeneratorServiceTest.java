@@ -16,13 +16,13 @@ class AiCodeGeneratorServiceTest {
 
     @Test
     void generateHtmlCode() {
-        HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode("请生成一个简单的HTML页面,不超过20行代码");
+        HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(1L, "请生成一个简单的HTML页面,不超过20行代码");
         System.out.println(htmlCodeResult);
     }
 
     @Test
     void generateMultiFileCode() {
-        MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode("请给我生成一个博客，不超过20行代码");
+        MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode(1L, "请给我生成一个博客，不超过20行代码");
         System.out.println(multiFileCodeResult);
     }
 }
\ No newline at end of file
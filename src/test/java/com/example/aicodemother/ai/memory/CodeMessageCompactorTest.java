@@ -0,0 +1,48 @@
+package com.example.aicodemother.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class CodeMessageCompactorTest {
+
+    @Test
+    void compactCodeBlocksAndKeepText() {
+        String text = "这是页面：\n```html\n<html>\n<body></body>\n</html>\n```\n样式如下\n```css\nbody {}\n```";
+        String compacted = CodeMessageCompactor.compact(text);
+        Assertions.assertEquals("这是页面：\n[index.html，3 行，旧版本已省略]\n样式如下\n[style.css，1 行，旧版本已省略]", compacted);
+        Assertions.assertFalse(CodeMessageCompactor.containsCode(compacted));
+        Assertions.assertEquals("没有代码", CodeMessageCompactor.compact("没有代码"));
+    }
+
+    @Test
+    void memoryKeepsOnlyLatestCode() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 100000, new LocalTokenCountEstimator(),
+                new InMemoryChatMemoryStore(), (id, messages, tokens, retained) -> {
+        });
+        memory.add(UserMessage.from("生成页面"));
+        memory.add(AiMessage.from("```html\n<p>v1</p>\n```"));
+        memory.add(UserMessage.from("改成 v2"));
+        memory.add(AiMessage.from("```html\n<p>v2</p>\n```"));
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals("[index.html，1 行，旧版本已省略]", ((AiMessage) messages.get(1)).text());
+        Assertions.assertEquals("```html\n<p>v2</p>\n```", ((AiMessage) messages.get(3)).text());
+    }
+
+    @Test
+    void renderAppFiles(@TempDir Path dir) throws Exception {
+        Assertions.assertNull(CodeMessageCompactor.renderAppFiles(dir));
+        Files.writeString(dir.resolve("index.html"), "<p>hi</p>\n");
+        Files.writeString(dir.resolve("script.js"), "alert(1)");
+        String rendered = CodeMessageCompactor.renderAppFiles(dir);
+        Assertions.assertTrue(rendered.endsWith("```html\n<p>hi</p>\n```\n\n```javascript\nalert(1)\n```"), rendered);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.aicodemother.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TokenBudgetChatMemoryTest {
+
+    private final LocalTokenCountEstimator estimator = new LocalTokenCountEstimator();
+
+    @Test
+    void estimateCountsWordsAndCjkCharacters() {
+        Assertions.assertEquals(0, estimator.estimateTokenCountInText(""));
+        // "hello" 5 个字符算 2 个 token，"world" 2 个，"!" 1 个
+        Assertions.assertEquals(5, estimator.estimateTokenCountInText("hello world!"));
+        Assertions.assertEquals(4, estimator.estimateTokenCountInText("生成网站"));
+        Assertions.assertEquals(3, estimator.estimateTokenCountInText("a\n    b"));
+    }
+
+    @Test
+    void keepWithinBudgetAndKeepSystemMessage() {
+        AtomicInteger trimmed = new AtomicInteger();
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 60, estimator, new InMemoryChatMemoryStore(),
+                (id, messages, tokens, retained) -> trimmed.addAndGet(messages));
+        memory.add(SystemMessage.from("你是网站生成助手"));
+        for (int i = 0; i < 10; i++) {
+            memory.add(UserMessage.from("第 " + i + " 个问题"));
+            memory.add(AiMessage.from("第 " + i + " 个回答"));
+        }
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertInstanceOf(SystemMessage.class, messages.getFirst());
+        Assertions.assertInstanceOf(UserMessage.class, messages.get(1));
+        Assertions.assertEquals(AiMessage.from("第 9 个回答"), messages.getLast());
+        // 系统消息不计入预算
+        Assertions.assertTrue(estimator.estimateTokenCountInMessages(messages.subList(1, messages.size())) <= 60);
+        Assertions.assertEquals(21, messages.size() + trimmed.get());
+    }
+
+    @Test
+    void keepNewestMessageEvenIfOverBudget() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 10, estimator, new InMemoryChatMemoryStore(),
+                (id, messages, tokens, retained) -> {
+                });
+        memory.add(UserMessage.from("短问题"));
+        memory.add(AiMessage.from("这是一段明显超过预算的很长很长很长的回答"));
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(1, messages.size());
+        Assertions.assertInstanceOf(AiMessage.class, messages.getFirst());
+    }
+
+    @Test
+    void replaceSystemMessage() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 1000, estimator, new InMemoryChatMemoryStore(),
+                (id, messages, tokens, retained) -> {
+                });
+        memory.add(SystemMessage.from("旧的系统提示词"));
+        memory.add(UserMessage.from("问题"));
+        memory.add(SystemMessage.from("新的系统提示词"));
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals(SystemMessage.from("新的系统提示词"), messages.getFirst());
+    }
+
+    @Test
+    void keepLatestPageAcrossFollowUpTurns() {
+        String page = "```html\n" + "<div class=\"card\"><h2 id=\"title\">标题</h2><p>内容，介绍</p></div>\n".repeat(300) + "```";
+        Assertions.assertTrue(estimator.estimateTokenCountInText(page) > 8000);
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 8000, estimator, new InMemoryChatMemoryStore(),
+                (id, messages, tokens, retained) -> {
+                });
+        memory.add(SystemMessage.from("你是网站生成助手"));
+        memory.add(UserMessage.from("生成一个博客"));
+        memory.add(AiMessage.from("页面如下：\n" + page));
+        memory.add(UserMessage.from("把标题改成蓝色"));
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(4, messages.size());
+        Assertions.assertEquals(UserMessage.from("生成一个博客"), messages.get(1));
+        Assertions.assertEquals(AiMessage.from("页面如下：\n" + page), messages.get(2));
+
+        // 再生成一版后旧版本压缩为摘要，最新一版仍完整保留
+        memory.add(AiMessage.from(page));
+        messages = memory.messages();
+        Assertions.assertFalse(CodeMessageCompactor.containsCode(messages.get(2)));
+        Assertions.assertEquals(AiMessage.from(page), messages.getLast());
+        Assertions.assertEquals(5, messages.size());
+    }
+
+    @Test
+    void replacePlanWithFullOutput() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 1000, estimator, new InMemoryChatMemoryStore(),
+                (id, messages, tokens, retained) -> {
+                });
+        memory.add(UserMessage.from("生成一个博客"));
+        memory.add(AiMessage.from("```html\n<p>旧页面</p>\n```"));
+        memory.add(UserMessage.from("换成三栏布局"));
+        memory.add(AiMessage.from("规划：三栏"));
+        String output = "规划：三栏\n\n```html\n<p>新页面</p>\n```";
+
+        Assertions.assertFalse(memory.replaceLastAiMessage("其他规划", AiMessage.from(output)));
+        Assertions.assertTrue(memory.replaceLastAiMessage("规划：三栏", AiMessage.from(output)));
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(4, messages.size());
+        Assertions.assertEquals(AiMessage.from(output), messages.getLast());
+        // 完整输出记入后，旧版本代码压缩为摘要
+        Assertions.assertFalse(CodeMessageCompactor.containsCode(messages.get(1)));
+    }
+
+    @Test
+    void removeFailedEditTurn() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 1000, estimator, new InMemoryChatMemoryStore(),
+                (id, messages, tokens, retained) -> {
+                });
+        memory.add(SystemMessage.from("你是网站生成助手"));
+        memory.add(UserMessage.from("生成一个博客"));
+        memory.add(AiMessage.from("页面已生成"));
+        memory.add(UserMessage.from("当前文件\n\n修改要求：标题改成红色"));
+        memory.add(AiMessage.from("<<<<<<< SEARCH"));
+
+        Assertions.assertTrue(memory.removeLastExchange());
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals(AiMessage.from("页面已生成"), messages.getLast());
+
+        memory.add(UserMessage.from("再改一次"));
+        Assertions.assertFalse(memory.removeLastExchange());
+    }
+
+    @Test
+    void replaceMessagesWritesStoreOnce() {
+        AtomicInteger updates = new AtomicInteger();
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore() {
+            @Override
+            public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+                updates.incrementAndGet();
+                super.updateMessages(memoryId, messages);
+            }
+        };
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 60, estimator, store,
+                (id, messages, tokens, retained) -> {
+                });
+        memory.add(UserMessage.from("旧的问题"));
+        updates.set(0);
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            history.add(UserMessage.from("第 " + i + " 个问题"));
+            history.add(AiMessage.from("第 " + i + " 个回答"));
+        }
+
+        memory.replaceMessages(history);
+        Assertions.assertEquals(1, updates.get());
+        List<ChatMessage> messages = memory.messages();
+        // 原有消息被替换，仍按预算裁剪
+        Assertions.assertFalse(messages.contains(UserMessage.from("旧的问题")));
+        Assertions.assertInstanceOf(UserMessage.class, messages.getFirst());
+        Assertions.assertEquals(AiMessage.from("第 9 个回答"), messages.getLast());
+        Assertions.assertTrue(estimator.estimateTokenCountInMessages(messages) <= 60);
+    }
+}
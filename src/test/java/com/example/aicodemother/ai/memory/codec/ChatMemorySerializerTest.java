@@ -0,0 +1,54 @@
+package com.example.aicodemother.ai.memory.codec;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ChatMemorySerializerTest {
+
+    private static final List<ChatMessage> MESSAGES = List.of(
+            SystemMessage.from("你是前端工程师"),
+            UserMessage.from("生成页面"),
+            AiMessage.from("```html\n" + "<p>页面内容</p>\n".repeat(200) + "```"),
+            UserMessage.from("张三", "改成蓝色"),
+            AiMessage.from(ToolExecutionRequest.builder().id("1").name("write").arguments("{}").build()),
+            ToolExecutionResultMessage.from("1", "write", "ok"));
+
+    @Test
+    void compactRoundTrip() {
+        ChatMemorySerializer serializer = new ChatMemorySerializer(new CompactChatMessagesCodec(), false, 0);
+        byte[] data = serializer.serialize(MESSAGES);
+        Assertions.assertEquals(MESSAGES, serializer.deserialize(data));
+        Assertions.assertTrue(data.length < ChatMessageSerializer.messagesToJson(MESSAGES).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void compressedRoundTrip() {
+        ChatMemorySerializer serializer = new ChatMemorySerializer(new CompactChatMessagesCodec(), true, 1024);
+        byte[] compressed = serializer.serialize(MESSAGES);
+        Assertions.assertEquals(MESSAGES, serializer.deserialize(compressed));
+        byte[] uncompressed = new ChatMemorySerializer(new CompactChatMessagesCodec(), false, 0).serialize(MESSAGES);
+        Assertions.assertTrue(compressed.length * 4 < uncompressed.length);
+        // 低于阈值的内容不压缩
+        List<ChatMessage> small = List.of(UserMessage.from("你好"));
+        Assertions.assertEquals(small, serializer.deserialize(serializer.serialize(small)));
+    }
+
+    @Test
+    void readLegacyJsonAndOtherCodecs() {
+        ChatMemorySerializer serializer = new ChatMemorySerializer(new CompactChatMessagesCodec(), true, 1024);
+        byte[] legacy = ChatMessageSerializer.messagesToJson(MESSAGES).getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(MESSAGES, serializer.deserialize(legacy));
+        byte[] json = new ChatMemorySerializer(new JsonChatMessagesCodec(), true, 1024).serialize(MESSAGES);
+        Assertions.assertEquals(MESSAGES, serializer.deserialize(json));
+    }
+}
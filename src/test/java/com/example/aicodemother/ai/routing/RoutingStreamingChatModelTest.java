@@ -0,0 +1,133 @@
+package com.example.aicodemother.ai.routing;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class RoutingStreamingChatModelTest {
+
+    private static final ChatRequest REQUEST = ChatRequest.builder().messages(UserMessage.from("hi")).build();
+
+    @Test
+    void useHedgeWhenPrimaryIsSlow() throws Exception {
+        StubModel slow = new StubModel(Duration.ofMillis(800), null, "slow");
+        StubModel fast = new StubModel(Duration.ofMillis(10), null, "fast");
+        Assertions.assertEquals("fast", chat(route(slow, fast)));
+        // 慢的请求在第一次输出时被取消
+        Thread.sleep(1000);
+        Assertions.assertTrue(slow.cancelled);
+        Assertions.assertFalse(fast.cancelled);
+    }
+
+    @Test
+    void noHedgeWhenPrimaryIsFast() throws Exception {
+        StubModel primary = new StubModel(Duration.ofMillis(10), null, "primary");
+        StubModel secondary = new StubModel(Duration.ofMillis(10), null, "secondary");
+        Assertions.assertEquals("primary", chat(route(primary, secondary)));
+        Assertions.assertEquals(0, secondary.calls);
+    }
+
+    @Test
+    void fallbackWhenPrimaryFailsBeforeFirstToken() throws Exception {
+        StubModel failing = new StubModel(Duration.ofMillis(10), new RuntimeException("down"), "failing");
+        StubModel secondary = new StubModel(Duration.ofMillis(10), null, "secondary");
+        Assertions.assertEquals("secondary", chat(route(failing, secondary)));
+    }
+
+    private static RoutingStreamingChatModel route(StubModel primary, StubModel secondary) {
+        Map<String, StreamingChatModel> backends = new LinkedHashMap<>();
+        backends.put("primary", primary);
+        backends.put("secondary", secondary);
+        return new RoutingStreamingChatModel(backends, Duration.ofMillis(100), Schedulers.parallel(),
+                new SimpleMeterRegistry());
+    }
+
+    private static String chat(StreamingChatModel model) throws Exception {
+        StringBuilder text = new StringBuilder();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        model.chat(REQUEST, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+                text.append(partialResponse.text());
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                result.complete(text.toString());
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 延迟输出固定内容的本地模型
+     */
+    private static class StubModel implements StreamingChatModel, StreamingHandle {
+
+        private final Duration firstTokenDelay;
+
+        private final RuntimeException error;
+
+        private final String text;
+
+        private volatile boolean cancelled;
+
+        private volatile int calls;
+
+        StubModel(Duration firstTokenDelay, RuntimeException error, String text) {
+            this.firstTokenDelay = firstTokenDelay;
+            this.error = error;
+            this.text = text;
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            calls++;
+            Schedulers.boundedElastic().schedule(() -> {
+                if (error != null) {
+                    handler.onError(error);
+                    return;
+                }
+                for (String token : List.of(text.split(""))) {
+                    if (cancelled) {
+                        return;
+                    }
+                    handler.onPartialResponse(new PartialResponse(token), new PartialResponseContext(this));
+                }
+                handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(text)).build());
+            }, firstTokenDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
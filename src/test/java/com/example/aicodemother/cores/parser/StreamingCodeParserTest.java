@@ -0,0 +1,64 @@
+package com.example.aicodemother.cores.parser;
+
+import com.example.aicodemother.ai.model.HtmlCodeResult;
+import com.example.aicodemother.ai.model.MultiFileCodeResult;
+import com.example.aicodemother.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StreamingCodeParserTest {
+
+    private static final String MULTI_FILE_CONTENT = """
+            下面是代码：
+            ```html
+            <html>
+            <body>`a` ``b``</body>
+            </html>
+
+            ```
+            ```css
+            body { color: red; }
+            ```
+            ```python
+            print(1)
+            ```
+            ```javascript
+            console.log('ok');
+            ```
+            完成""";
+
+    @Test
+    void parseMultiFileInSmallChunks() {
+        for (int chunkSize = 1; chunkSize <= 7; chunkSize++) {
+            CodeFileCollector collector = new CodeFileCollector();
+            StreamingCodeParser parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, collector);
+            for (int i = 0; i < MULTI_FILE_CONTENT.length(); i += chunkSize) {
+                parser.feed(MULTI_FILE_CONTENT.substring(i, Math.min(MULTI_FILE_CONTENT.length(), i + chunkSize)));
+            }
+            parser.finish();
+            MultiFileCodeResult expected = new MultiFileCodeParser().parse(MULTI_FILE_CONTENT);
+            Assertions.assertEquals(expected, collector.toResult(CodeGenTypeEnum.MULTI_FILE));
+        }
+    }
+
+    @Test
+    void parseHtmlWithoutFence() {
+        CodeFileCollector collector = new CodeFileCollector();
+        StreamingCodeParser parser = new StreamingCodeParser(CodeGenTypeEnum.HTML, collector);
+        parser.feed("  <p>hello</p>");
+        parser.feed("\n");
+        parser.finish();
+        HtmlCodeResult result = (HtmlCodeResult) collector.toResult(CodeGenTypeEnum.HTML);
+        Assertions.assertEquals("<p>hello</p>", result.getHtmlCode());
+    }
+
+    @Test
+    void closeUnterminatedFenceOnFinish() {
+        CodeFileCollector collector = new CodeFileCollector();
+        StreamingCodeParser parser = new StreamingCodeParser(CodeGenTypeEnum.HTML, collector);
+        parser.feed("```html\n<div></div>\n`");
+        parser.finish();
+        HtmlCodeResult result = (HtmlCodeResult) collector.toResult(CodeGenTypeEnum.HTML);
+        Assertions.assertEquals("<div></div>\n`", result.getHtmlCode());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.aicodemother.cores.patch;
+
+import com.example.aicodemother.exception.BusinessException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class CodePatchParserTest {
+
+    @Test
+    void parseBlocksAndIgnoreText() {
+        String content = """
+                把标题改成红色，并删除页脚。
+
+                FILE: style.css
+                <<<<<<< SEARCH
+                h1 {
+                    color: blue;
+                }
+                =======
+                h1 {
+                    color: red;
+                }
+                >>>>>>> REPLACE
+                FILE: index.html
+                <<<<<<< SEARCH
+                <footer>版权所有</footer>
+                =======
+                >>>>>>> REPLACE
+                """;
+        List<CodePatch> patches = CodePatchParser.parse(content);
+        Assertions.assertEquals(2, patches.size());
+        Assertions.assertEquals(new CodePatch("style.css", "h1 {\n    color: blue;\n}", "h1 {\n    color: red;\n}"),
+                patches.get(0));
+        Assertions.assertEquals(new CodePatch("index.html", "<footer>版权所有</footer>", ""), patches.get(1));
+    }
+
+    @Test
+    void rejectIncompleteBlock() {
+        Assertions.assertThrows(BusinessException.class,
+                () -> CodePatchParser.parse("FILE: index.html\n<<<<<<< SEARCH\n<p>\n=======\n<div>"));
+        Assertions.assertThrows(BusinessException.class,
+                () -> CodePatchParser.parse("<<<<<<< SEARCH\n<p>\n=======\n<div>\n>>>>>>> REPLACE"));
+        Assertions.assertTrue(CodePatchParser.parse("没有补丁").isEmpty());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.aicodemother.cores.saver;
+
+import com.example.aicodemother.cores.patch.CodePatch;
+import com.example.aicodemother.exception.BusinessException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PatchCodeFileSaverTest {
+
+    private static final String CONTENT = "<body>\n    <h1>标题</h1>\n    <p>正文</p>\n    <p>正文</p>\n</body>";
+
+    @Test
+    void applyExactMatch() {
+        String result = PatchCodeFileSaver.applyPatch(CONTENT,
+                new CodePatch("index.html", "<h1>标题</h1>", "<h1>新标题</h1>"));
+        Assertions.assertEquals("<body>\n    <h1>新标题</h1>\n    <p>正文</p>\n    <p>正文</p>\n</body>", result);
+    }
+
+    @Test
+    void applyIgnoringIndent() {
+        String result = PatchCodeFileSaver.applyPatch(CONTENT,
+                new CodePatch("index.html", "<body>\n<h1>标题</h1>", "<body>\n  <h2>标题</h2>"));
+        Assertions.assertEquals("<body>\n  <h2>标题</h2>\n    <p>正文</p>\n    <p>正文</p>\n</body>", result);
+    }
+
+    @Test
+    void rejectMissingOrAmbiguousMatch() {
+        Assertions.assertThrows(BusinessException.class,
+                () -> PatchCodeFileSaver.applyPatch(CONTENT, new CodePatch("index.html", "<p>正文</p>", "")));
+        Assertions.assertThrows(BusinessException.class,
+                () -> PatchCodeFileSaver.applyPatch(CONTENT, new CodePatch("index.html", "<h3>", "")));
+        Assertions.assertThrows(BusinessException.class,
+                () -> PatchCodeFileSaver.applyPatch(CONTENT, new CodePatch("index.html", "  ", "x")));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.aicodemother.cores.sse;
+
+import com.example.aicodemother.cores.stream.GenerationChunk;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+class SseFrameCoalescerTest {
+
+    @Test
+    void flushOnCompleteAndMaxChars() {
+        Assertions.assertEquals(List.of("abc@2"),
+                frames(SseFrameCoalescer.coalesce(chunks("a", "b", "c"), Duration.ofSeconds(1), 100)));
+        Assertions.assertEquals(List.of("abc@1", "def@3"),
+                frames(SseFrameCoalescer.coalesce(chunks("ab", "c", "de", "f"), Duration.ofSeconds(1), 3)));
+    }
+
+    @Test
+    void flushOnWindow() {
+        Flux<GenerationChunk> chunks = chunks("a", "b")
+                .concatWith(Mono.delay(Duration.ofMillis(300)).thenReturn(new GenerationChunk("g", 2, "c")));
+        Assertions.assertEquals(List.of("ab@1", "c@2"),
+                frames(SseFrameCoalescer.coalesce(chunks, Duration.ofMillis(50), 100)));
+    }
+
+    @Test
+    void passThroughWhenWindowIsZero() {
+        Assertions.assertEquals(List.of("a@0", "b@1"),
+                frames(SseFrameCoalescer.coalesce(chunks("a", "b"), Duration.ZERO, 100)));
+    }
+
+    private static Flux<GenerationChunk> chunks(String... texts) {
+        return Flux.range(0, texts.length).map(i -> new GenerationChunk("g", i, texts[i]));
+    }
+
+    private static List<String> frames(Flux<GenerationChunk> frames) {
+        return frames.map(frame -> frame.getText() + "@" + frame.getSeq()).collectList().block();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.aicodemother.cores.sse;
+
+import cn.hutool.json.JSONUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成内容帧编码基准：{@link SseJsonFrameEncoder} 与原先的 Map.of("d", chunk) + JSONUtil 序列化对比
+ * 运行 main 方法即可，加上 -prof gc 参数可同时查看每帧的内存分配
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SseJsonFrameEncoderBenchmark {
+
+    /**
+     * 模型输出的典型片段：纯文字、带引号与换行的代码
+     */
+    @Param({"text", "code"})
+    public String chunkType;
+
+    private String chunk;
+
+    private final SseJsonFrameEncoder encoder = new SseJsonFrameEncoder();
+
+    @Setup
+    public void setUp() {
+        chunk = "text".equals(chunkType)
+                ? "好的，我将为你生成一个简洁的个人博客页面，"
+                : "<div class=\"card\">\n\t<h2 id=\"title\">标题</h2>\n\t<p>内容</p>\n</div>\n";
+    }
+
+    @Benchmark
+    public String frameEncoder() {
+        return encoder.encode(chunk);
+    }
+
+    @Benchmark
+    public String hutoolMap() {
+        return JSONUtil.toJsonStr(Map.of("d", chunk));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SseJsonFrameEncoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
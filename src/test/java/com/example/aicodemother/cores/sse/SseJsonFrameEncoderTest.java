@@ -0,0 +1,34 @@
+package com.example.aicodemother.cores.sse;
+
+import cn.hutool.json.JSONUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+class SseJsonFrameEncoderTest {
+
+    @Test
+    void sameAsHutoolForPlainText() {
+        SseJsonFrameEncoder encoder = new SseJsonFrameEncoder();
+        String chunk = "<div class=\"app\">\n\t你好</div>\\";
+        Assertions.assertEquals(JSONUtil.toJsonStr(Map.of('d', chunk)), encoder.encode(chunk));
+    }
+
+    @Test
+    void roundTripRandomChunks() {
+        SseJsonFrameEncoder encoder = new SseJsonFrameEncoder();
+        String alphabet = "ab\"\\\n\r\t\b\f\u0001\u001f  中</>`{}";
+        Random random = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            StringBuilder chunk = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                chunk.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String frame = encoder.encode(chunk);
+            Assertions.assertEquals(chunk.toString(), JSONUtil.parseObj(frame).getStr("d"));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.aicodemother.cores.store;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+class CodeFileStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void identicalFilesShareOneBlob() throws Exception {
+        CodeFileStore store = new CodeFileStore(root.resolve("store"));
+        Path first = Files.createDirectories(root.resolve("code_output/html_1"));
+        Path second = Files.createDirectories(root.resolve("code_output/html_2"));
+        Files.writeString(first.resolve("index.html"), "<p>同一模板</p>");
+        Files.writeString(second.resolve("index.html"), "<p>同一模板</p>");
+        Files.writeString(second.resolve(".index.html.1.tmp"), "临时文件");
+
+        Map<String, String> firstManifest = store.commit(first);
+        Map<String, String> secondManifest = store.commit(second);
+
+        Assertions.assertEquals(firstManifest, secondManifest);
+        Assertions.assertEquals(1, secondManifest.size());
+        Assertions.assertTrue(Files.isSameFile(first.resolve("index.html"), second.resolve("index.html")));
+        Assertions.assertEquals(secondManifest, store.getManifest(second));
+    }
+
+    @Test
+    void checkoutLinksFilesAndRemovesStaleOnes() throws Exception {
+        CodeFileStore store = new CodeFileStore(root.resolve("store"));
+        Path source = Files.createDirectories(root.resolve("code_output/multi_file_1"));
+        Path deploy = Files.createDirectories(root.resolve("code_deploy/abc123"));
+        Files.writeString(source.resolve("index.html"), "<p>页面</p>");
+        Files.writeString(source.resolve("style.css"), "body {}");
+        Files.writeString(deploy.resolve("old.js"), "旧文件");
+
+        // 未登记的目录读取清单时先登记
+        store.checkout(store.getManifest(source), deploy);
+
+        Assertions.assertTrue(Files.isSameFile(source.resolve("style.css"), deploy.resolve("style.css")));
+        Assertions.assertEquals("<p>页面</p>", Files.readString(deploy.resolve("index.html")));
+        Assertions.assertFalse(Files.exists(deploy.resolve("old.js")));
+        Assertions.assertEquals(store.getManifest(source), store.getManifest(deploy));
+    }
+
+    @Test
+    void changedFilesBetweenCommits() throws Exception {
+        CodeFileStore store = new CodeFileStore(root.resolve("store"));
+        Path dir = Files.createDirectories(root.resolve("code_output/multi_file_1"));
+        Files.writeString(dir.resolve("index.html"), "<p>v1</p>");
+        Files.writeString(dir.resolve("style.css"), "body {}");
+        Map<String, String> before = store.commit(dir);
+
+        Files.writeString(dir.resolve("script.js"), "console.log(1)");
+        Path replaced = dir.resolve(".index.html.tmp");
+        Files.writeString(replaced, "<p>v2</p>");
+        Files.move(replaced, dir.resolve("index.html"), StandardCopyOption.REPLACE_EXISTING);
+        Map<String, String> after = store.commit(dir);
+
+        Assertions.assertEquals(List.of("index.html", "script.js"), CodeFileStore.changedFiles(before, after));
+        Assertions.assertEquals(before.get("style.css"), after.get("style.css"));
+        Assertions.assertEquals(CodeFileStore.hash("<p>v2</p>"), after.get("index.html"));
+    }
+
+    @Test
+    void precompressTextFilesOnCommitAndCheckout() throws Exception {
+        CodeFileStore store = new CodeFileStore(root.resolve("store"));
+        Path source = Files.createDirectories(root.resolve("code_output/multi_file_1"));
+        Path deploy = Files.createDirectories(root.resolve("code_deploy/abc123"));
+        String html = "<p>页面内容</p>\n".repeat(100);
+        Files.writeString(source.resolve("index.html"), html);
+        Files.writeString(source.resolve("script.js"), "console.log(1)");
+
+        Map<String, String> manifest = store.commit(source);
+        store.checkout(manifest, deploy);
+
+        Assertions.assertEquals(Set.of("index.html", "script.js"), manifest.keySet());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(deploy.resolve("index.html.gz")))) {
+            Assertions.assertEquals(html, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Assertions.assertTrue(Files.isSameFile(source.resolve("index.html.gz"), deploy.resolve("index.html.gz")));
+        // 过小的文件不生成压缩版本
+        Assertions.assertFalse(Files.exists(source.resolve("script.js.gz")));
+
+        Files.delete(source.resolve("index.html"));
+        store.commit(source);
+        Assertions.assertFalse(Files.exists(source.resolve("index.html.gz")));
+    }
+
+    @Test
+    void replaceFileDropsStaleCompressedVersion() throws Exception {
+        CodeFileStore store = new CodeFileStore(root.resolve("store"));
+        Path dir = Files.createDirectories(root.resolve("code_output/html_1"));
+        Files.writeString(dir.resolve("index.html"), "<p>旧页面</p>\n".repeat(100));
+        store.commit(dir);
+        Assertions.assertTrue(Files.exists(dir.resolve("index.html.gz")));
+
+        String html = "<p>新页面</p>\n".repeat(100);
+        Path temp = Files.writeString(dir.resolve(".index.html.1.tmp"), html);
+        CodeFileStore.replaceFile(temp, dir.resolve("index.html"));
+        // 登记之前旧的压缩版本已删除，不会按旧内容提供新文件
+        Assertions.assertFalse(Files.exists(dir.resolve("index.html.gz")));
+
+        store.commit(dir);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(dir.resolve("index.html.gz")))) {
+            Assertions.assertEquals(html, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
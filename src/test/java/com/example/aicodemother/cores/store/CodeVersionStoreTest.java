@@ -0,0 +1,70 @@
+package com.example.aicodemother.cores.store;
+
+import com.example.aicodemother.exception.BusinessException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class CodeVersionStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void recordListAndRestore() throws Exception {
+        CodeFileStore fileStore = new CodeFileStore(root.resolve("store"));
+        CodeVersionStore versionStore = new CodeVersionStore(root.resolve("store/versions"), fileStore,
+                CodeVersionStore.DEFAULT_MAX_VERSIONS);
+        Path dir = Files.createDirectories(root.resolve("code_output/multi_file_1"));
+        Files.writeString(dir.resolve("index.html"), "<p>v1</p>");
+        Files.writeString(dir.resolve("style.css"), "body {}");
+        versionStore.record(dir, fileStore.commit(dir));
+        // 内容没有变化时不记录新版本
+        Assertions.assertNull(versionStore.record(dir, fileStore.commit(dir)));
+
+        Files.delete(dir.resolve("index.html"));
+        Files.writeString(dir.resolve("index.html"), "<p>v2</p>");
+        CodeVersion second = versionStore.record(dir, fileStore.commit(dir));
+        Assertions.assertEquals(2, (int) second.getVersion());
+        Assertions.assertEquals(List.of("index.html"), second.getChangedFiles());
+
+        CodeVersion restored = versionStore.restore(dir, 1);
+        Assertions.assertEquals(3, (int) restored.getVersion());
+        Assertions.assertEquals(1, (int) restored.getRestoredFrom());
+        Assertions.assertEquals("<p>v1</p>", Files.readString(dir.resolve("index.html")));
+        Assertions.assertEquals(List.of(3, 2, 1), versionStore.list(dir).stream().map(CodeVersion::getVersion).toList());
+        Assertions.assertEquals(Map.of("index.html", "<p>v2</p>", "style.css", "body {}"),
+                versionStore.readFiles(versionStore.get(dir, 2)));
+        Assertions.assertThrows(BusinessException.class, () -> versionStore.get(dir, 9));
+    }
+
+    @Test
+    void packReplacedBlobsAndPruneOldVersions() throws Exception {
+        CodeFileStore fileStore = new CodeFileStore(root.resolve("store"));
+        CodeVersionStore versionStore = new CodeVersionStore(root.resolve("store/versions"), fileStore, 2);
+        Path dir = Files.createDirectories(root.resolve("code_output/html_1"));
+        for (int i = 1; i <= 3; i++) {
+            Files.deleteIfExists(dir.resolve("index.html"));
+            Files.writeString(dir.resolve("index.html"), "<p>v" + i + "</p>");
+            versionStore.record(dir, fileStore.commit(dir));
+        }
+        String v1 = CodeFileStore.hash("<p>v1</p>");
+        String v2 = CodeFileStore.hash("<p>v2</p>");
+
+        // 只保留最近两个版本，第一版的存储对象已无引用并被删除
+        Assertions.assertEquals(List.of(3, 2), versionStore.list(dir).stream().map(CodeVersion::getVersion).toList());
+        Assertions.assertFalse(Files.exists(fileStore.blobPath(v1)));
+        Assertions.assertFalse(Files.exists(fileStore.blobPath(v1).resolveSibling(v1 + CodeFileStore.GZIP_SUFFIX)));
+        // 第二版只被历史版本引用，只保留压缩版本，读取与恢复时解压
+        Assertions.assertFalse(Files.exists(fileStore.blobPath(v2)));
+        Assertions.assertEquals(Map.of("index.html", "<p>v2</p>"), versionStore.readFiles(versionStore.get(dir, 2)));
+        versionStore.restore(dir, 2);
+        Assertions.assertEquals("<p>v2</p>", Files.readString(dir.resolve("index.html")));
+        Assertions.assertTrue(Files.isSameFile(dir.resolve("index.html"), fileStore.blobPath(v2)));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.aicodemother.cores.stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class GenerationStreamTest {
+
+    private final Map<String, List<String>> spilled = new HashMap<>();
+
+    private final ChunkSpillStore memorySpillStore = new ChunkSpillStore() {
+        @Override
+        public void append(String generationId, long startSeq, List<String> chunks) {
+            spilled.computeIfAbsent(generationId, key -> new ArrayList<>()).addAll(chunks);
+        }
+
+        @Override
+        public List<String> load(String generationId, long fromSeq, long toSeq) {
+            return spilled.get(generationId).subList((int) fromSeq, (int) toSeq);
+        }
+
+        @Override
+        public void expire(String generationId) {
+        }
+    };
+
+    @Test
+    void resumeFromSpilledAndRingChunks() {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationStream stream = newStream(source.asFlux(), Duration.ofSeconds(10));
+        List<String> received = new ArrayList<>();
+        Disposable first = stream.subscribe(-1).subscribe(chunk -> received.add(chunk.getText()));
+        for (int i = 0; i < 7; i++) {
+            source.tryEmitNext("t" + i);
+        }
+        first.dispose();
+        // 断开期间继续生成
+        for (int i = 7; i < 10; i++) {
+            source.tryEmitNext("t" + i);
+        }
+        source.tryEmitComplete();
+        Assertions.assertEquals(List.of("t0", "t1", "t2", "t3", "t4", "t5", "t6"), received);
+        Assertions.assertEquals(List.of("t0", "t1", "t2", "t3", "t4", "t5"), spilled.get("g"));
+        List<String> resumed = stream.subscribe(2).map(chunk -> chunk.getSeq() + chunk.getText()).collectList().block();
+        Assertions.assertEquals(List.of("3t3", "4t4", "5t5", "6t6", "7t7", "8t8", "9t9"), resumed);
+    }
+
+    @Test
+    void cancelUpstreamAfterGracePeriod() throws InterruptedException {
+        boolean[] cancelled = {false};
+        Flux<String> source = Flux.<String>never().doOnCancel(() -> cancelled[0] = true);
+        GenerationStream stream = newStream(source, Duration.ofMillis(50));
+        stream.subscribe(-1).subscribe().dispose();
+        Assertions.assertFalse(cancelled[0]);
+        Thread.sleep(300);
+        Assertions.assertTrue(cancelled[0]);
+    }
+
+    @Test
+    void resumeWhileSpillIsPending() {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        List<Runnable> spillTasks = new ArrayList<>();
+        boolean[] terminated = {false};
+        GenerationStream stream = new GenerationStream("g", 1L, 1L, source.asFlux(), memorySpillStore, 4, 2,
+                Duration.ofSeconds(10), Schedulers.parallel(), spillTasks::add, () -> terminated[0] = true);
+        stream.subscribe(-1).subscribe().dispose();
+        for (int i = 0; i < 8; i++) {
+            source.tryEmitNext("t" + i);
+        }
+        source.tryEmitComplete();
+        // 写入任务尚未执行，溢出片段仍在内存中
+        Assertions.assertEquals(1, spillTasks.size());
+        Assertions.assertNull(spilled.get("g"));
+        Assertions.assertFalse(terminated[0]);
+        List<String> resumed = stream.subscribe(0).map(chunk -> chunk.getSeq() + chunk.getText()).collectList().block();
+        Assertions.assertEquals(List.of("1t1", "2t2", "3t3", "4t4", "5t5", "6t6", "7t7"), resumed);
+
+        spillTasks.getFirst().run();
+        Assertions.assertEquals(List.of("t0", "t1", "t2", "t3"), spilled.get("g"));
+        Assertions.assertTrue(terminated[0]);
+        resumed = stream.subscribe(1).map(chunk -> chunk.getSeq() + chunk.getText()).collectList().block();
+        Assertions.assertEquals(List.of("2t2", "3t3", "4t4", "5t5", "6t6", "7t7"), resumed);
+    }
+
+    private GenerationStream newStream(Flux<String> source, Duration resumeGrace) {
+        return new GenerationStream("g", 1L, 1L, source, memorySpillStore, 4, 2, resumeGrace,
+                Schedulers.parallel(), Runnable::run, () -> {
+        });
+    }
+}